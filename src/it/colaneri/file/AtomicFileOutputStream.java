@@ -0,0 +1,187 @@
+package it.colaneri.file;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Stream di scrittura che pubblica il file solo a scrittura completata.
+ * I dati sono scritti in un file temporaneo accanto alla destinazione,
+ * con il nome dato da {@link FileUtils#changeExtension(String)}; alla
+ * chiusura il file temporaneo viene sincronizzato sul disco e rinominato
+ * atomicamente sulla destinazione, cosi' che chi la legge trovi sempre
+ * il contenuto precedente o quello nuovo completo, mai uno parziale.
+ * In caso di errore va chiamato {@link #abort()}, che scarta il file
+ * temporaneo lasciando intatta la destinazione; dopo una chiusura
+ * riuscita abort() non ha effetto, quindi puo' stare in un blocco finally.
+ * Il file temporaneo viene creato solo se non esiste gia': se esiste
+ * (un file dell'utente con quel nome, un'altra scrittura in corso sulla
+ * stessa destinazione o su un file con lo stesso nome ed estensione
+ * diversa, o una scrittura interrotta) l'apertura fallisce con una
+ * IOException e nessun file viene toccato.
+ */
+public class AtomicFileOutputStream extends OutputStream {
+
+	private final Path target;
+
+	private final Path temp;
+
+	private final FileOutputStream out;
+
+	private boolean closed;
+
+	/**
+	 * Apre il file temporaneo per sostituire la destinazione
+	 * @param file il file di destinazione
+	 * @throws IOException in caso di errore
+	 */
+	public AtomicFileOutputStream(File file) throws IOException {
+		this(file, false);
+	}
+
+	/**
+	 * Apre il file temporaneo per sostituire la destinazione
+	 * @param file il file di destinazione
+	 * @param append se true il file temporaneo parte da una copia della
+	 * destinazione, se esiste, e i dati le vengono accodati
+	 * @throws IOException in caso di errore
+	 */
+	public AtomicFileOutputStream(File file, boolean append) throws IOException {
+		target = file.getAbsoluteFile().toPath();
+		temp = prepare(target, append);
+		try {
+			out = new FileOutputStream(temp.toFile(), append);
+		} catch (IOException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		out.write(b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		out.write(b, off, len);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Sincronizza il file temporaneo sul disco e lo rinomina sulla destinazione
+	 * @throws IOException in caso di errore; la destinazione resta invariata
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		try {
+			out.getFD().sync();
+		} catch (IOException e) {
+			out.close();
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+		out.close();
+		publish(temp, target);
+	}
+
+	/**
+	 * Scarta i dati scritti e il file temporaneo; la destinazione resta invariata.
+	 * Non ha effetto se lo stream e' gia' stato chiuso
+	 */
+	public void abort() {
+		if (closed)
+			return;
+		closed = true;
+		try {
+			out.close();
+		} catch (IOException e) {
+			// il file viene comunque cancellato
+		}
+		try {
+			Files.deleteIfExists(temp);
+		} catch (IOException e) {
+			// file temporaneo non cancellabile: va rimosso prima di riscrivere il file
+		}
+	}
+
+	/**
+	 * @param file il file di destinazione
+	 * @return il file temporaneo usato per scriverlo
+	 */
+	public static File tempFile(File file) {
+		return tempFile(file.getAbsoluteFile().toPath()).toFile();
+	}
+
+	static Path tempFile(Path target) {
+		String name = target.getFileName().toString();
+		String tmp = FileUtils.changeExtension(name);
+		// Il file di destinazione ha gia' l'estensione dei temporanei
+		if (tmp.equals(name))
+			tmp = name + FileUtils.getExtension(name);
+		return target.resolveSibling(tmp);
+	}
+
+	/**
+	 * Crea il file temporaneo per la destinazione
+	 * @param target la destinazione
+	 * @param append se true il file temporaneo e' una copia della destinazione
+	 * @return il file temporaneo
+	 * @throws IOException in caso di errore, o se il file temporaneo esiste gia'
+	 */
+	static Path prepare(Path target, boolean append) throws IOException {
+		Path temp = tempFile(target);
+		try {
+			Files.createFile(temp);
+		} catch (FileAlreadyExistsException e) {
+			throw new IOException("Il file temporaneo " + temp + " esiste gia': "
+					+ "e' in uso da un'altra scrittura o va rimosso", e);
+		}
+		if (append && Files.exists(target)) {
+			try (OutputStream os = Files.newOutputStream(temp)) {
+				Files.copy(target, os);
+			} catch (IOException e) {
+				Files.deleteIfExists(temp);
+				throw e;
+			}
+		}
+		return temp;
+	}
+
+	/**
+	 * Rinomina atomicamente il file temporaneo, gia' sincronizzato, sulla
+	 * destinazione e sincronizza la directory che li contiene
+	 * @param temp il file temporaneo
+	 * @param target la destinazione
+	 * @throws IOException in caso di errore; il file temporaneo viene cancellato
+	 */
+	static void publish(Path temp, Path target) throws IOException {
+		try {
+			Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+		// La rinomina e' durevole solo quando lo e' la directory; non
+		// tutti i sistemi permettono di aprire una directory in lettura
+		try (FileChannel dir = FileChannel.open(target.getParent(), StandardOpenOption.READ)) {
+			dir.force(true);
+		} catch (IOException e) {
+			// sincronizzazione della directory non supportata
+		}
+	}
+}
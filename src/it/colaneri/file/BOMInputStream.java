@@ -0,0 +1,94 @@
+package it.colaneri.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * InputStream che riconosce ed elimina il BOM iniziale di un testo Unicode.
+ * Alla costruzione vengono letti al piu' 4 byte: se formano un BOM UTF-8,
+ * UTF-16LE/BE o UTF-32LE/BE questo viene scartato e il charset
+ * corrispondente e' disponibile con {@link #getCharset()}, altrimenti i byte
+ * letti vengono rimessi nello stream. Lo stream sottostante viene quindi
+ * aperto una sola volta, senza rileggerne l'inizio.
+ */
+public class BOMInputStream extends PushbackInputStream{
+
+    private static final int MAX_BOM_LENGTH = 4;
+
+    private final Charset charset;
+
+    private final int bomLength;
+
+    /**
+     * Legge l'inizio dello stream alla ricerca del BOM
+     *
+     * @param in lo stream da leggere
+     * @throws IOException in caso di errore
+     */
+    public BOMInputStream(InputStream in)
+            throws IOException{
+        super(in, MAX_BOM_LENGTH);
+        byte[] b = new byte[MAX_BOM_LENGTH];
+        int n = in.readNBytes(b, 0, MAX_BOM_LENGTH);
+
+        Charset found = null;
+        int length = 0;
+        if(n >= 4 && b[0] == (byte)0xFF && b[1] == (byte)0xFE && b[2] == 0 && b[3] == 0){
+            found = charset("UTF-32LE");
+            length = 4;
+        }
+        else if(n >= 4 && b[0] == 0 && b[1] == 0 && b[2] == (byte)0xFE && b[3] == (byte)0xFF){
+            found = charset("UTF-32BE");
+            length = 4;
+        }
+        else if(n >= 3 && b[0] == (byte)0xEF && b[1] == (byte)0xBB && b[2] == (byte)0xBF){
+            found = StandardCharsets.UTF_8;
+            length = 3;
+        }
+        else if(n >= 2 && b[0] == (byte)0xFF && b[1] == (byte)0xFE){
+            found = StandardCharsets.UTF_16LE;
+            length = 2;
+        }
+        else if(n >= 2 && b[0] == (byte)0xFE && b[1] == (byte)0xFF){
+            found = StandardCharsets.UTF_16BE;
+            length = 2;
+        }
+        if(found == null){
+            length = 0;
+        }
+        this.charset = found;
+        this.bomLength = length;
+        if(n > length){
+            unread(b, length, n - length);
+        }
+    }
+
+    //I charset UTF-32 non sono obbligatori per tutte le piattaforme
+    private static Charset charset(String name){
+        return Charset.isSupported(name) ? Charset.forName(name) : null;
+    }
+
+    /**
+     * @return true se lo stream iniziava con un BOM
+     */
+    public boolean hasBOM(){
+        return charset != null;
+    }
+
+    /**
+     * @return il charset indicato dal BOM, o null se il BOM non era presente
+     */
+    public Charset getCharset(){
+        return charset;
+    }
+
+    /**
+     * @return il numero di byte del BOM scartato, 0 se il BOM non era presente
+     */
+    public int getBOMLength(){
+        return bomLength;
+    }
+}
@@ -0,0 +1,74 @@
+package it.colaneri.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+///////////////////////////////////////////////////////////////////////////
+/** Esito di una pulizia effettuata tramite
+ * {@link FileSystem#reapExpired(File, java.io.FileFilter, int, int, int)}.
+ * Gli errori non interrompono la pulizia: sono raccolti, insieme al
+ * path che li ha causati, in {@link CleanResult#getFailures()}.
+ */
+public class CleanResult{
+
+    private final long deletedFiles;
+
+    private final long deletedDirs;
+
+    private final long bytes;
+
+    private final Map<File, IOException> failures;
+
+    private final long elapsedMillis;
+
+    ///////////////////////////////////////////////////////////////////////
+    CleanResult(long deletedFiles, long deletedDirs, long bytes,
+                Map<File, IOException> failures, long elapsedMillis){
+        this.deletedFiles = deletedFiles;
+        this.deletedDirs = deletedDirs;
+        this.bytes = bytes;
+        this.failures = Collections.unmodifiableMap(failures);
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** @return Il numero di file cancellati */
+    public long getDeletedFiles(){
+        return deletedFiles;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** @return Il numero di directory vuote cancellate */
+    public long getDeletedDirs(){
+        return deletedDirs;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** @return Lo spazio recuperato in byte, pari alla somma delle
+     * dimensioni dei file cancellati */
+    public long getBytes(){
+        return bytes;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** @return I file e le directory che non e' stato possibile leggere
+     * o cancellare, con il relativo errore */
+    public Map<File, IOException> getFailures(){
+        return failures;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** @return La durata della pulizia in millisecondi */
+    public long getElapsedMillis(){
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString(){
+        return "deletedFiles=" + deletedFiles + ", deletedDirs=" + deletedDirs +
+               ", bytes=" + bytes + ", failures=" + failures.size() +
+               ", elapsed=" + elapsedMillis + "ms";
+    }
+}
@@ -0,0 +1,70 @@
+package it.colaneri.file;
+
+///////////////////////////////////////////////////////////////////////////
+/** Statistiche aggregate di una copia di directory effettuata
+ * tramite {@link FileSystem#copyDirParallel(File, File, boolean,
+ * java.io.FileFilter, int, int)} o
+ * {@link FileSystem#syncDir(File, File, boolean, java.io.FileFilter,
+ * SyncMode, boolean, int)}.
+ */
+public class CopyStats{
+
+    private final long files;
+
+    private final long bytes;
+
+    private final long skipped;
+
+    private final long deleted;
+
+    private final long elapsedMillis;
+
+    ///////////////////////////////////////////////////////////////////////
+    CopyStats(long files, long bytes, long skipped, long deleted,
+              long elapsedMillis){
+        this.files = files;
+        this.bytes = bytes;
+        this.skipped = skipped;
+        this.deleted = deleted;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** @return Il numero di file copiati */
+    public long getFiles(){
+        return files;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** @return Il numero di byte copiati */
+    public long getBytes(){
+        return bytes;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** @return Il numero di file non copiati perche' gia' aggiornati
+     * nella destinazione */
+    public long getSkipped(){
+        return skipped;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** @return Il numero di file cancellati dalla destinazione perche'
+     * non piu' presenti nella sorgente */
+    public long getDeleted(){
+        return deleted;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** @return La durata della copia in millisecondi */
+    public long getElapsedMillis(){
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString(){
+        return "files=" + files + ", bytes=" + bytes +
+               ", skipped=" + skipped + ", deleted=" + deleted +
+               ", elapsed=" + elapsedMillis + "ms";
+    }
+}
@@ -0,0 +1,387 @@
+package it.colaneri.file;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+///////////////////////////////////////////////////////////////////////////
+/** Indice delle dimensioni di un albero di directory.
+ * L'albero viene visitato una sola volta alla costruzione; da quel
+ * momento le dimensioni di ogni directory sono mantenute aggiornate da
+ * un thread che riceve gli eventi di un {@link WatchService}, cosi' che
+ * {@link DirectorySizeIndex#size(File, boolean)} costi una semplice
+ * ricerca invece di una visita completa come
+ * {@link FileSystem#directorySize(File, boolean)}.
+ * Ad ogni evento viene riletta solo la directory coinvolta; gli eventi
+ * arrivati insieme sono accorpati, cosi' che una raffica di modifiche
+ * nella stessa directory costi un solo listing.
+ * Come in {@link FileSystem#directorySize(File, boolean)} sono contati
+ * solo i file regolari e i link simbolici a file contano la dimensione
+ * del file puntato; a differenza di quel metodo i link simbolici a
+ * directory non vengono percorsi, e le modifiche a un file puntato da un
+ * link fuori dalla directory vengono viste solo al successivo evento
+ * della directory che contiene il link.
+ * L'indice va chiuso con {@link DirectorySizeIndex#close()} per
+ * fermare il thread di aggiornamento.
+ */
+public class DirectorySizeIndex
+    implements Closeable{
+
+    private final Path root;
+
+    private final WatchService watcher;
+
+    private final Map<Path, Node> nodes = new ConcurrentHashMap<>();
+
+    private final Thread updater;
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Costruisce l'indice visitando l'albero e avvia il thread
+     * di aggiornamento.
+     * @param root La directory radice dell'albero da indicizzare
+     * @throws IOException Sollevata se root non e' una directory valida
+     * o in caso di errore durante la visita
+     */
+    public DirectorySizeIndex(File root)
+        throws IOException{
+
+        if(root == null || !root.isDirectory()){
+            throw new IOException("Il path indicato non e' una directory valida: " + root);
+        }
+        this.root = root.toPath().toAbsolutePath().normalize();
+        this.watcher = this.root.getFileSystem().newWatchService();
+        try{
+            addSubtree(this.root, null);
+        }
+        catch(IOException e){
+            watcher.close();
+            throw e;
+        }
+
+        updater = new Thread(this::watch, "DirectorySizeIndex-" + this.root);
+        updater.setDaemon(true);
+        updater.start();
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Ritorna la dimensione di una directory espressa in byte, con la
+     * stessa semantica di {@link FileSystem#directorySize(File, boolean)}
+     * salvo che per i link simbolici a directory, che non sono percorsi.
+     * Se la directory non fa parte dell'albero indicizzato la dimensione
+     * viene calcolata con una visita.
+     * @param dir La directory di cui si vuole la dimensione
+     * @param recursive Se true somma anche le subdirectory
+     * @return La dimensione della directory espressa in byte
+     */
+    public long size(File dir, boolean recursive){
+        if(dir == null){
+            throw new IllegalArgumentException("Il parametro dir non puo' essere null");
+        }
+        Node node = nodes.get(dir.toPath().toAbsolutePath().normalize());
+        if(node == null){
+            return FileSystem.directorySize(dir, recursive);
+        }
+        return recursive ? node.total : node.own;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Ritorna la dimensione totale dell'albero indicizzato.
+     * @return La dimensione della radice, subdirectory comprese
+     */
+    public long size(){
+        Node node = nodes.get(root);
+        return node == null ? 0 : node.total;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** @return La directory radice dell'indice */
+    public File getRoot(){
+        return root.toFile();
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Ferma il thread di aggiornamento e rilascia il {@link WatchService}.
+     * @throws IOException in caso di errore nella chiusura
+     */
+    @Override
+    public void close()
+        throws IOException{
+
+        watcher.close();
+        updater.interrupt();
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    //Ciclo del thread di aggiornamento
+    private void watch(){
+        try{
+            while(true){
+                Set<Node> dirty = new LinkedHashSet<>();
+                WatchKey key = watcher.take();
+                do{
+                    process(key, dirty);
+                }
+                while((key = watcher.poll()) != null);
+
+                for(Node node:dirty){
+                    if(nodes.get(node.path) == node){
+                        rescan(node);
+                    }
+                }
+            }
+        }
+        catch(ClosedWatchServiceException | InterruptedException e){
+            //indice chiuso
+        }
+    }
+
+    //Interpreta gli eventi di una directory
+    private void process(WatchKey key, Set<Node> dirty){
+        Path dir = (Path)key.watchable();
+        Node node = nodes.get(dir);
+        if(node == null){
+            key.cancel();
+            return;
+        }
+
+        boolean overflow = false;
+        for(WatchEvent<?> event:key.pollEvents()){
+            if(event.kind() == StandardWatchEventKinds.OVERFLOW){
+                overflow = true;
+                continue;
+            }
+
+            Path child = dir.resolve((Path)event.context());
+            Node childNode = nodes.get(child);
+            if(event.kind() == StandardWatchEventKinds.ENTRY_CREATE &&
+               childNode == null &&
+               Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)){
+                try{
+                    addSubtree(child, node);
+                }
+                catch(IOException e){
+                    //gia' cancellata: arrivera' l'evento corrispondente
+                }
+            }
+            else if(event.kind() == StandardWatchEventKinds.ENTRY_DELETE &&
+                    childNode != null){
+                removeSubtree(childNode);
+            }
+            else if(childNode == null){
+                dirty.add(node);
+            }
+        }
+
+        if(overflow){
+            //Eventi persi: si ricostruisce tutto il sottoalbero
+            removeSubtree(node);
+            try{
+                addSubtree(dir, node.parent);
+            }
+            catch(IOException e){
+                //la directory non esiste piu'
+            }
+        }
+        else if(!key.reset()){
+            removeSubtree(node);
+        }
+    }
+
+    //Rilegge i file contenuti direttamente nella directory
+    private void rescan(Node node){
+        try{
+            long own = ownSize(node.path);
+            propagate(node, own - node.own);
+            node.own = own;
+        }
+        catch(IOException e){
+            //la directory non esiste piu': arrivera' l'evento corrispondente
+        }
+    }
+
+    private static long ownSize(Path dir)
+        throws IOException{
+
+        long size = 0;
+        try(DirectoryStream<Path> ds = Files.newDirectoryStream(dir)){
+            for(Path p:ds){
+                try{
+                    size += fileSize(p, Files.readAttributes(
+                        p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS));
+                }
+                catch(IOException e){
+                    //cancellato nel frattempo
+                }
+            }
+        }
+        return size;
+    }
+
+    //Dimensione di un elemento letto senza seguire i link: come
+    //File.isFile() i link sono seguiti e contano solo i file regolari
+    private static long fileSize(Path p, BasicFileAttributes attrs){
+        if(attrs.isSymbolicLink()){
+            try{
+                attrs = Files.readAttributes(p, BasicFileAttributes.class);
+            }
+            catch(IOException e){
+                return 0; //link interrotto
+            }
+        }
+        return attrs.isRegularFile() ? attrs.size() : 0;
+    }
+
+    //Aggiunge all'indice un sottoalbero e ne somma il totale agli antenati.
+    //In caso di errore il sottoalbero parziale viene scartato
+    private void addSubtree(Path dir, Node parent)
+        throws IOException{
+
+        List<Node> added = new ArrayList<>();
+        try{
+            walk(dir, parent, added);
+        }
+        catch(IOException | RuntimeException e){
+            if(!added.isEmpty() && parent != null){
+                parent.children.remove(added.get(0));
+            }
+            for(Node node:added){
+                if(node.key != null){
+                    node.key.cancel();
+                }
+            }
+            throw e;
+        }
+
+        if(added.isEmpty()){
+            return;
+        }
+        for(Node node:added){
+            nodes.put(node.path, node);
+        }
+        Node top = added.get(0);
+        if(parent != null){
+            propagate(parent, top.total);
+        }
+    }
+
+    //Visita il sottoalbero registrando le directory; i nodi creati sono
+    //accodati ad added, il primo e' la radice del sottoalbero
+    private void walk(Path dir, Node parent, List<Node> added)
+        throws IOException{
+
+        Files.walkFileTree(dir, new SimpleFileVisitor<>(){
+
+            private Node current = parent;
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs)
+                throws IOException{
+
+                Node node = new Node(d, current);
+                //La registrazione precede il listing: nessun evento va perso
+                node.key = d.register(watcher,
+                                      StandardWatchEventKinds.ENTRY_CREATE,
+                                      StandardWatchEventKinds.ENTRY_DELETE,
+                                      StandardWatchEventKinds.ENTRY_MODIFY);
+                if(current != null){
+                    current.children.add(node);
+                }
+                added.add(node);
+                current = node;
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path f, BasicFileAttributes attrs){
+                current.own += fileSize(f, attrs);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path f, IOException exc){
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path d, IOException exc){
+                current.total += current.own;
+                if(current.parent != null && current.parent != parent){
+                    current.parent.total += current.total;
+                }
+                current = current.parent;
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    //Toglie dall'indice un sottoalbero e ne sottrae il totale agli antenati
+    private void removeSubtree(Node top){
+        if(top.parent != null){
+            top.parent.children.remove(top);
+            propagate(top.parent, -top.total);
+        }
+        List<Node> stack = new ArrayList<>();
+        stack.add(top);
+        while(!stack.isEmpty()){
+            Node node = stack.remove(stack.size() - 1);
+            nodes.remove(node.path, node);
+            if(node.key != null){
+                node.key.cancel();
+            }
+            stack.addAll(node.children);
+        }
+    }
+
+    //Somma delta al totale della directory e di tutti i suoi antenati
+    private static void propagate(Node node, long delta){
+        if(delta == 0){
+            return;
+        }
+        for(Node n = node; n != null; n = n.parent){
+            n.total += delta;
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    //Una directory indicizzata. I campi sono scritti solo dal thread di
+    //aggiornamento (o dal costruttore prima del suo avvio)
+    private static final class Node{
+
+        private final Path path;
+
+        private final Node parent;
+
+        private final List<Node> children = new ArrayList<>();
+
+        private WatchKey key;
+
+        //Byte dei file contenuti direttamente nella directory
+        private volatile long own;
+
+        //Byte dell'intero sottoalbero
+        private volatile long total;
+
+        Node(Path path, Node parent){
+            this.path = path;
+            this.parent = parent;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package it.colaneri.file;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+
+///////////////////////////////////////////////////////////////////////////
+/** Riepilogo del contenuto di una directory prodotto con un'unica
+ * visita da {@link FileSystem#directorySummary(File, boolean, int, int)}.
+ */
+public class DirectorySummary{
+
+    private final long bytes;
+
+    private final long files;
+
+    private final long dirs;
+
+    private final Map<File, Long> largestFiles;
+
+    private final Map<String, Long> bytesByExtension;
+
+    ///////////////////////////////////////////////////////////////////////
+    DirectorySummary(long bytes, long files, long dirs,
+                     Map<File, Long> largestFiles,
+                     Map<String, Long> bytesByExtension){
+        this.bytes = bytes;
+        this.files = files;
+        this.dirs = dirs;
+        this.largestFiles = Collections.unmodifiableMap(largestFiles);
+        this.bytesByExtension = Collections.unmodifiableMap(bytesByExtension);
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** @return La dimensione totale dei file espressa in byte. I link
+     * simbolici a file contano la dimensione del file puntato, come in
+     * {@link FileSystem#directorySize(File, boolean)}; a differenza di
+     * quest'ultimo i link simbolici a directory non vengono percorsi */
+    public long getBytes(){
+        return bytes;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** @return Il numero di file */
+    public long getFiles(){
+        return files;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** @return Il numero di subdirectory, esclusa quella di partenza */
+    public long getDirs(){
+        return dirs;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** @return I file piu' grandi con la relativa dimensione in byte,
+     * in ordine di dimensione decrescente */
+    public Map<File, Long> getLargestFiles(){
+        return largestFiles;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** @return I byte occupati per ciascuna estensione, come ritornata da
+     * {@link FileUtils#getExtension(String)} (stringa vuota per i file
+     * senza estensione) */
+    public Map<String, Long> getBytesByExtension(){
+        return bytesByExtension;
+    }
+
+    @Override
+    public String toString(){
+        return "bytes=" + bytes + ", files=" + files + ", dirs=" + dirs +
+               ", largestFiles=" + largestFiles +
+               ", bytesByExtension=" + bytesByExtension;
+    }
+}
@@ -0,0 +1,254 @@
+package it.colaneri.file;
+
+import it.colaneri.file.filters.FileAttributesFilter;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+///////////////////////////////////////////////////////////////////////////
+/** Pulizia dei file scaduti con cancellazioni parallele.
+ * L'albero viene visitato una sola volta su un unico thread, mentre le
+ * cancellazioni sono eseguite da un pool di dimensione fissa: su un
+ * filesystem di rete il costo e' dominato dalla latenza, non dalla CPU.
+ * Le cancellazioni in volo sono limitate da un semaforo, cosi' che la
+ * visita non accumuli una coda senza limiti.
+ * Le directory rimaste vuote sono cancellate in un secondo momento,
+ * dalla piu' profonda alla radice, rispettando i <CODE>safelevels</CODE>
+ * di {@link FileSystem#cleanExpired(File, FileFilter, int, int)}.
+ */
+final class ExpiredReaper{
+
+    private final FileAttributesFilter filter;
+
+    private final long cutoff;
+
+    private final int safelevels;
+
+    private final int limit;
+
+    private final ExecutorService pool;
+
+    private final Semaphore inFlight;
+
+    private final LongAdder deletedFiles = new LongAdder();
+
+    private final LongAdder deletedDirs = new LongAdder();
+
+    private final LongAdder bytes = new LongAdder();
+
+    private final Map<File, IOException> failures = new ConcurrentHashMap<>();
+
+    //Directory visitate, raggruppate per livello (la radice e' a 0)
+    private final List<List<DirNode>> levels = new ArrayList<>();
+
+    ///////////////////////////////////////////////////////////////////////
+    ExpiredReaper(FileFilter filter, int minutes, int safelevels, int concurrency){
+        if(concurrency <= 0){
+            concurrency = Runtime.getRuntime().availableProcessors();
+        }
+        this.filter = filter == null ? null : FileAttributesFilter.of(filter);
+        this.cutoff = minutes <= 0 ? Long.MAX_VALUE :
+                      System.currentTimeMillis() - (long) minutes * 60 * 1000;
+        this.safelevels = safelevels;
+        this.limit = concurrency * 2;
+        this.pool = Executors.newFixedThreadPool(concurrency);
+        this.inFlight = new Semaphore(limit);
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Esegue la pulizia
+     * @param dir La directory radice, gia' verificata
+     * @return L'esito della pulizia
+     * @throws IOException Sollevata se la visita dell'albero
+     * non puo' essere avviata o se il thread viene interrotto
+     */
+    CleanResult run(File dir)
+        throws IOException{
+
+        long start = System.nanoTime();
+        try{
+            Files.walkFileTree(dir.toPath(),
+                               EnumSet.of(FileVisitOption.FOLLOW_LINKS),
+                               Integer.MAX_VALUE,
+                               new Visitor());
+            await();
+
+            //Directory vuote, dalla piu' profonda alla radice
+            for(int level = levels.size() - 1; level >= 0; level--){
+                for(DirNode node:levels.get(level)){
+                    if(node.remaining.get() == 0 && safelevels - level <= 0){
+                        submit(() -> {
+                            if(delete(node.path)){
+                                deletedDirs.increment();
+                            }
+                            else{
+                                node.keepInParent();
+                            }
+                        });
+                    }
+                    else{
+                        node.keepInParent();
+                    }
+                }
+                await();
+            }
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Pulizia interrotta");
+        }
+        finally{
+            pool.shutdownNow();
+        }
+        long elapsed = (System.nanoTime() - start) / 1000000;
+
+        return new CleanResult(deletedFiles.sum(), deletedDirs.sum(), bytes.sum(),
+                               new LinkedHashMap<>(failures), elapsed);
+    }
+
+    //Accoda una cancellazione, attendendo se ce ne sono gia' troppe in volo
+    private void submit(Runnable task)
+        throws InterruptedException{
+
+        inFlight.acquire();
+        pool.execute(() -> {
+            try{
+                task.run();
+            }
+            finally{
+                inFlight.release();
+            }
+        });
+    }
+
+    //Attende il completamento di tutte le cancellazioni in volo
+    private void await()
+        throws InterruptedException{
+
+        inFlight.acquire(limit);
+        inFlight.release(limit);
+    }
+
+    private boolean delete(Path p){
+        try{
+            Files.delete(p);
+            return true;
+        }
+        catch(IOException e){
+            failures.put(p.toFile(), e);
+            return false;
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    //Una directory visitata: conta gli elementi che vi restano
+    private static final class DirNode{
+
+        private final Path path;
+
+        private final DirNode parent;
+
+        private final AtomicInteger remaining = new AtomicInteger();
+
+        DirNode(Path path, DirNode parent){
+            this.path = path;
+            this.parent = parent;
+        }
+
+        void keepInParent(){
+            if(parent != null){
+                parent.remaining.incrementAndGet();
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    //Visita dell'albero: ogni elemento e' letto una sola volta
+    private final class Visitor
+        extends SimpleFileVisitor<Path>{
+
+        private final Deque<DirNode> open = new ArrayDeque<>();
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs){
+            open.push(new DirNode(d, open.peek()));
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path f, BasicFileAttributes attrs)
+            throws IOException{
+
+            DirNode node = open.peek();
+            if(attrs.lastModifiedTime().toMillis() < cutoff &&
+               (filter == null || filter.accept(f, attrs))){
+                long size = attrs.size();
+                try{
+                    submit(() -> {
+                        if(delete(f)){
+                            deletedFiles.increment();
+                            bytes.add(size);
+                        }
+                        else if(node != null){
+                            node.remaining.incrementAndGet();
+                        }
+                    });
+                }
+                catch(InterruptedException e){
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Pulizia interrotta");
+                }
+            }
+            else if(node != null){
+                node.remaining.incrementAndGet();
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path f, IOException exc){
+            failures.put(f.toFile(), exc);
+            DirNode node = open.peek();
+            if(node != null){
+                node.remaining.incrementAndGet();
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(Path d, IOException exc){
+            DirNode node = open.pop();
+            if(exc != null){
+                failures.put(d.toFile(), exc);
+                node.remaining.incrementAndGet();
+            }
+            int level = open.size();
+            while(levels.size() <= level){
+                levels.add(new ArrayList<>());
+            }
+            levels.get(level).add(node);
+            return FileVisitResult.CONTINUE;
+        }
+    }
+}
@@ -6,10 +6,21 @@
 
 package it.colaneri.file;
 
+import it.colaneri.file.filters.FileAttributesFilter;
 import it.colaneri.time.Timestamp;
 
 import java.io.*;
-import java.util.Date;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumSet;
 import java.util.Objects;
 import java.util.StringTokenizer;
 
@@ -21,6 +32,9 @@ public class FileSystem{
     /** Dimensione del buffer di trasferimento standard */
     public static final int DEFAULTBUFFERSIZE = 1024;
 
+    /** Numero massimo di byte richiesti al kernel per ogni trasferimento */
+    private static final long TRANSFERCHUNKSIZE = Integer.MAX_VALUE;
+
     ///////////////////////////////////////////////////////////////////////
     /** Crea recursivamente le directory contenute in un path di file.
      * Il path deve essere di un file oppure terminare col
@@ -59,11 +73,11 @@ public class FileSystem{
     public static void copy(File in, File out)
         throws FileNotFoundException, IOException{
 
-        copy(in, out, DEFAULTBUFFERSIZE);
+        copyFile(in, out, DEFAULTBUFFERSIZE);
     }
 
     ///////////////////////////////////////////////////////////////////////
-    /** Copia un file
+    /** Copia un file, come {@link FileSystem#copyFile(File, File, int)}
      * @param in File sorgente
      * @param out File destinazione
      * @param bufferSize Dimensione del buffer
@@ -73,24 +87,106 @@ public class FileSystem{
     public static void copy(File in, File out, int bufferSize)
         throws FileNotFoundException, IOException{
 
+        copyFile(in, out, bufferSize);
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Copia un file, come {@link FileSystem#copy(File, File)}
+     * @param in File sorgente
+     * @param out File destinazione
+     * @return Il numero di byte copiati
+     * @throws FileNotFoundException File sorgente non trovato
+     * @throws IOException Impossibile effettuare la copia
+     */
+    public static long copyFile(File in, File out)
+        throws FileNotFoundException, IOException{
+
+        return copyFile(in, out, DEFAULTBUFFERSIZE);
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Copia un file.
+     * La copia avviene lato kernel tramite
+     * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+     * senza transitare per lo heap; solo se il trasferimento fallisce
+     * si ripiega sulla copia tramite buffer.
+     * @param in File sorgente
+     * @param out File destinazione
+     * @param bufferSize Dimensione del buffer usato nel caso in cui
+     * il trasferimento lato kernel non sia disponibile
+     * @return Il numero di byte copiati
+     * @throws FileNotFoundException File sorgente non trovato
+     * @throws IOException Impossibile effettuare la copia
+     */
+    public static long copyFile(File in, File out, int bufferSize)
+        throws FileNotFoundException, IOException{
+
         if(in.isDirectory()){
             throw new IOException("Il path " + in.getPath() +
                                   " corrisponde " +
                                   "a una directory");
         }
 
-        int i;
-        byte[] buf = new byte[bufferSize];
+        try(FileInputStream fis = new FileInputStream(in);
+            FileOutputStream fos = new FileOutputStream(out)){
 
-        FileInputStream fis = new FileInputStream(in);
-        FileOutputStream fos = new FileOutputStream(out);
+            FileChannel src = fis.getChannel();
+            FileChannel dst = fos.getChannel();
+            if(src.size() == 0){
+                //Alcuni file dichiarano dimensione 0 ma hanno un contenuto
+                //(procfs, sysfs, pipe, dispositivi): si copia tramite
+                //buffer fino alla fine dello stream
+                return pump(fis, fos, bufferSize);
+            }
+            try{
+                return transfer(src, dst);
+            }
+            catch(IOException e){
+                //Trasferimento lato kernel non riuscito: si riparte
+                //da capo con la copia tramite buffer
+                src.position(0);
+                dst.truncate(0);
+                dst.position(0);
+                return pump(fis, fos, bufferSize);
+            }
+        }
+    }
+
+    //Copia lato kernel fino alla fine del file sorgente. transferTo puo'
+    //ritornare 0 anche prima della fine: in quel caso si solleva
+    //un'eccezione, cosi' che la copia riparta tramite buffer invece di
+    //produrre un file troncato
+    private static long transfer(FileChannel src, FileChannel dst)
+        throws IOException{
 
-        while((i = fis.read(buf)) != -1){
-            fos.write(buf, 0, i);
+        long size = src.size();
+        long position = 0;
+        while(position < size){
+            long n = src.transferTo(position,
+                                    Math.min(TRANSFERCHUNKSIZE, size - position),
+                                    dst);
+            if(n <= 0){
+                throw new IOException("Trasferimento interrotto a " + position +
+                                      " byte su " + size);
+            }
+            position += n;
         }
+        return position;
+    }
+
+    //Copia tramite buffer nello heap
+    private static long pump(InputStream in, OutputStream out, int bufferSize)
+        throws IOException{
 
-        fis.close();
-        fos.close();
+        long total = 0;
+        int i;
+        byte[] buf = new byte[bufferSize];
+
+        while((i = in.read(buf)) != -1){
+            out.write(buf, 0, i);
+            total += i;
+        }
+        return total;
     }
 
     ///////////////////////////////////////////////////////////////////////
@@ -106,8 +202,7 @@ public class FileSystem{
     public static boolean move(File in, File out, int bufferSize)
         throws FileNotFoundException, IOException{
 
-        FileSystem.copy(in, out, bufferSize);
-        return in.delete();
+        return moveFile(in, out, bufferSize).isSourceRemoved();
     }
 
     ///////////////////////////////////////////////////////////////////////
@@ -122,8 +217,7 @@ public class FileSystem{
     public static boolean move(File in, File out)
         throws FileNotFoundException, IOException{
 
-        FileSystem.copy(in, out, DEFAULTBUFFERSIZE);
-        return in.delete();
+        return moveFile(in, out, DEFAULTBUFFERSIZE).isSourceRemoved();
     }
 
     ///////////////////////////////////////////////////////////////////////
@@ -140,9 +234,50 @@ public class FileSystem{
      */
     public static boolean move(File in, File out, String timestampFormat)
         throws FileNotFoundException, IOException{
+
+        return moveFile(in, out, timestampFormat).isSourceRemoved();
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Sposta un file. Se sorgente e destinazione si trovano sullo
+     * stesso filesystem lo spostamento avviene con una rename atomica,
+     * altrimenti il file viene copiato e la sorgente cancellata.
+     * @param in File sorgente
+     * @param out File destinazione
+     * @param bufferSize Dimensione del buffer in byte usato
+     * nel caso in cui sia necessaria la copia
+     * @return La strada percorsa per lo spostamento
+     * @throws FileNotFoundException File sorgente non trovato
+     * @throws IOException Impossibile effettuare la copia
+     */
+    public static MoveResult moveFile(File in, File out, int bufferSize)
+        throws FileNotFoundException, IOException{
+
+        if(!in.isDirectory() && rename(in, out)){
+            return MoveResult.RENAMED;
+        }
+
+        FileSystem.copy(in, out, bufferSize);
+        return in.delete() ? MoveResult.COPIED : MoveResult.COPIED_SOURCE_KEPT;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Sposta un file appendendo un timestamp in testa al nome,
+     * con le stesse modalita' di {@link FileSystem#moveFile(File, File, int)}.
+     * Se la stringa di timestamp e' null il nome della destinazione
+     * non viene modificato.
+     * @param in File sorgente
+     * @param out File destinazione
+     * @param timestampFormat formato del timestamp da appendere
+     * @return La strada percorsa per lo spostamento
+     * @throws FileNotFoundException File sorgente non trovato
+     * @throws IOException Impossibile effettuare la copia
+     */
+    public static MoveResult moveFile(File in, File out, String timestampFormat)
+        throws FileNotFoundException, IOException{
         if(timestampFormat != null){
 
-            String timestamp = new Timestamp(timestampFormat).toString();
+            String timestamp = Timestamp.now(timestampFormat);
             String outFilePath = out.getPath();
             if(File.separator.equals("\\")){
                 outFilePath = outFilePath.replace('\\', '/');
@@ -152,14 +287,21 @@ public class FileSystem{
                                                            lastIndexOf('/') +
                                                            1));
             String outFilename = out.getName();
-            FileSystem.move(in,
-                            new File(outFileDirPath +
-                                     timestamp + "_" + outFilename));
+            out = new File(outFileDirPath + timestamp + "_" + outFilename);
         }
-        else{
-            FileSystem.copy(in, out, DEFAULTBUFFERSIZE);
+        return moveFile(in, out, DEFAULTBUFFERSIZE);
+    }
+
+    //Rename atomica; false se non e' possibile (ad es. filesystem diversi)
+    private static boolean rename(File in, File out){
+        try{
+            Files.move(in.toPath(), out.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        }
+        catch(IOException e){
+            return false;
         }
-        return in.delete();
     }
 
     ///////////////////////////////////////////////////////////////////////
@@ -188,7 +330,7 @@ public class FileSystem{
                                boolean recursive)
         throws FileNotFoundException, IOException{
 
-        copyDir(in, out, recursive, null, DEFAULTBUFFERSIZE);
+        copyDirectory(in, out, recursive);
     }
 
     ///////////////////////////////////////////////////////////////////////
@@ -221,7 +363,7 @@ public class FileSystem{
                                FileFilter filter)
         throws FileNotFoundException, IOException{
 
-        copyDir(in, out, recursive, filter, DEFAULTBUFFERSIZE);
+        copyDirectory(in, out, recursive, filter);
     }
 
     ///////////////////////////////////////////////////////////////////////
@@ -255,6 +397,75 @@ public class FileSystem{
                                int bufferSize)
         throws FileNotFoundException, IOException{
 
+        copyDirectory(in, out, recursive, filter, bufferSize);
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Copia la directory sorgente nella directory destinazione, come
+     * {@link FileSystem#copyDir(File, File, boolean)}
+     * @param in La directory sorgente.
+     * @param out La directory destinazione.
+     * @param recursive Imposta la modalita' recursiva o quella
+     * non recursiva.
+     * @return Il numero di byte copiati
+     * @throws FileNotFoundException Sollevata se la directory sorgente
+     * non esiste
+     * @throws IOException Sollevata in caso di errore di I/O
+     * durante la copia
+     */
+    public static long copyDirectory(File in,
+                                     File out,
+                                     boolean recursive)
+        throws FileNotFoundException, IOException{
+
+        return copyDirectory(in, out, recursive, null, DEFAULTBUFFERSIZE);
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Copia la directory sorgente nella directory destinazione, come
+     * {@link FileSystem#copyDir(File, File, boolean, FileFilter)}
+     * @param in La directory sorgente.
+     * @param out La directory destinazione.
+     * @param recursive Imposta la modalita' recursiva o quella
+     * non recursiva.
+     * @param filter Un filtro per selezionare quali file copiare.
+     * @return Il numero di byte copiati
+     * @throws FileNotFoundException Sollevata se la directory sorgente
+     * non esiste
+     * @throws IOException Sollevata in caso di errore di I/O
+     * durante la copia
+     */
+    public static long copyDirectory(File in,
+                                     File out,
+                                     boolean recursive,
+                                     FileFilter filter)
+        throws FileNotFoundException, IOException{
+
+        return copyDirectory(in, out, recursive, filter, DEFAULTBUFFERSIZE);
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Copia la directory sorgente nella directory destinazione, come
+     * {@link FileSystem#copyDir(File, File, boolean, FileFilter, int)}
+     * @param in La directory sorgente.
+     * @param out La directory destinazione.
+     * @param recursive Imposta la modalita' recursiva o quella
+     * non recursiva.
+     * @param filter Un filtro per selezionare quali file copiare.
+     * @param bufferSize Specifica la dimensione del buffer di copia.
+     * @return Il numero di byte copiati
+     * @throws FileNotFoundException Sollevata se la directory sorgente
+     * non esiste
+     * @throws IOException Sollevata in caso di errore di I/O
+     * durante la copia
+     */
+    public static long copyDirectory(File in,
+                                     File out,
+                                     boolean recursive,
+                                     FileFilter filter,
+                                     int bufferSize)
+        throws FileNotFoundException, IOException{
+
         if(!in.exists()){
             throw new FileNotFoundException();
         }
@@ -278,21 +489,149 @@ public class FileSystem{
             }
         }
 
+        long total = 0;
         File[] list = in.listFiles();
         assert list != null; //è stato verificato prima
         for(File list1:list){
             File outFile = new File(out.getPath() + "/" + list1.getName());
             if(list1.isDirectory()){
                 if(recursive){
-                    copyDir(list1, outFile, true, filter, bufferSize);
+                    total += copyDirectory(list1, outFile, true, filter, bufferSize);
                 }
             }
             else{
                 if(filter == null || filter.accept(outFile)){
-                    copy(list1, outFile, bufferSize);
+                    total += copyFile(list1, outFile, bufferSize);
                 }
             }
         }
+        return total;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Copia la directory sorgente nella directory destinazione come
+     * {@link FileSystem#copyDir(File, File, boolean, FileFilter, int)},
+     * ma distribuendo la copia di file e subdirectory su piu' thread.
+     * Il filtro agisce esclusivamente sui file, quindi le eventuali
+     * subdirectory sono sempre replicate.
+     * @param in La directory sorgente.
+     * @param out La directory destinazione. Questa puo' anche
+     * non esistere fisicamente, nel qual caso
+     * viene creata.
+     * @param recursive Imposta la modalita' recursiva o quella
+     * non recursiva.
+     * @param filter Un filtro per selezionare quali file copiare.
+     * Deve essere thread-safe, perche' viene invocato in concorrenza
+     * dai thread della copia.
+     * @param bufferSize Specifica la dimensione del buffer di copia.
+     * @param parallelism Il numero massimo di copie contemporanee;
+     * se minore o uguale a 0 viene usato il numero di processori.
+     * @return Le statistiche della copia: file, byte e durata.
+     * @throws FileNotFoundException Sollevata se la directory sorgente
+     * non esiste
+     * @throws IOException Sollevata in caso di errore di I/O
+     * durante la copia
+     */
+    public static CopyStats copyDirParallel(File in,
+                                            File out,
+                                            boolean recursive,
+                                            FileFilter filter,
+                                            int bufferSize,
+                                            int parallelism)
+        throws FileNotFoundException, IOException{
+
+        checkSourceDir(in);
+
+        return new ParallelDirCopy(recursive, filter, bufferSize)
+            .run(in, out, parallelism);
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Sincronizza in modo incrementale la directory destinazione con
+     * quella sorgente: ricorsione e filtro seguono le regole di
+     * {@link FileSystem#copyDir(File, File, boolean, FileFilter, int)},
+     * ma sono copiati solo i file che la modalita' indicata considera
+     * modificati. La data di ultima modifica dei file copiati viene
+     * allineata a quella della sorgente, cosi' che alla sincronizzazione
+     * successiva risultino invariati.
+     * @param in La directory sorgente.
+     * @param out La directory destinazione. Questa puo' anche
+     * non esistere fisicamente, nel qual caso
+     * viene creata.
+     * @param recursive Imposta la modalita' recursiva o quella
+     * non recursiva.
+     * @param filter Un filtro per selezionare quali file copiare.
+     * Deve essere thread-safe, perche' viene invocato in concorrenza
+     * dai thread della sincronizzazione.
+     * @param mode Il criterio per stabilire se un file e' da copiare.
+     * @param deleteExtraneous Se true cancella dalla destinazione file e
+     * directory non presenti nella sorgente (le directory solo in modalita'
+     * recursiva).
+     * @param parallelism Il numero massimo di copie contemporanee;
+     * se minore o uguale a 0 viene usato il numero di processori.
+     * @return Le statistiche della sincronizzazione.
+     * @throws FileNotFoundException Sollevata se la directory sorgente
+     * non esiste
+     * @throws IOException Sollevata in caso di errore di I/O
+     * durante la copia
+     */
+    public static CopyStats syncDir(File in,
+                                    File out,
+                                    boolean recursive,
+                                    FileFilter filter,
+                                    SyncMode mode,
+                                    boolean deleteExtraneous,
+                                    int parallelism)
+        throws FileNotFoundException, IOException{
+
+        if(mode == null){
+            throw new IllegalArgumentException("Il parametro mode non puo' essere null");
+        }
+        checkSourceDir(in);
+
+        return new ParallelDirCopy(recursive, filter, DEFAULTBUFFERSIZE,
+                                   mode, deleteExtraneous)
+            .run(in, out, parallelism);
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Sincronizza in modo recursivo la directory destinazione con
+     * quella sorgente, saltando i file con stessa dimensione e data
+     * di ultima modifica.
+     * Equivale a
+     * {@link FileSystem#syncDir(File, File, boolean, FileFilter, SyncMode, boolean, int)}
+     * con <CODE>recursive=true</CODE>, <CODE>filter=null</CODE>,
+     * <CODE>mode=SIZE_AND_TIME</CODE> e <CODE>parallelism=0</CODE>
+     * @param in La directory sorgente.
+     * @param out La directory destinazione.
+     * @param deleteExtraneous Se true cancella dalla destinazione file e
+     * directory non presenti nella sorgente.
+     * @return Le statistiche della sincronizzazione.
+     * @throws FileNotFoundException Sollevata se la directory sorgente
+     * non esiste
+     * @throws IOException Sollevata in caso di errore di I/O
+     * durante la copia
+     */
+    public static CopyStats syncDir(File in,
+                                    File out,
+                                    boolean deleteExtraneous)
+        throws FileNotFoundException, IOException{
+
+        return syncDir(in, out, true, null, SyncMode.SIZE_AND_TIME,
+                       deleteExtraneous, 0);
+    }
+
+    //Verifica che la sorgente sia una directory esistente
+    private static void checkSourceDir(File in)
+        throws FileNotFoundException, IOException{
+
+        if(!in.exists()){
+            throw new FileNotFoundException();
+        }
+        if(!in.isDirectory()){
+            throw new IOException("Il parametro " +
+                                  "passato non e' una directory valida");
+        }
     }
 
     ///////////////////////////////////////////////////////////////////////
@@ -312,9 +651,7 @@ public class FileSystem{
                                File out)
         throws FileNotFoundException, IOException{
 
-        copyDir(in, out, true, null, DEFAULTBUFFERSIZE);
-
-        cleanDir(in);
+        moveDirectory(in, out, DEFAULTBUFFERSIZE);
     }
 
     ///////////////////////////////////////////////////////////////////////
@@ -335,9 +672,72 @@ public class FileSystem{
                                int bufferSize)
         throws FileNotFoundException, IOException{
 
-        copyDir(in, out, true, null, bufferSize);
+        moveDirectory(in, out, bufferSize);
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Sposta in modo recursivo la directory sorgente nella directory
+     * destinazione, come {@link FileSystem#moveDir(File, File)}
+     * @param in La directory sorgente.
+     * @param out La directory destinazione.
+     * @return La strada percorsa per lo spostamento
+     * @throws FileNotFoundException Sollevata se la directory sorgente
+     * non esiste
+     * @throws IOException Sollevata in caso di errore di I/O
+     * durante la copia
+     */
+    public static MoveResult moveDirectory(File in,
+                                           File out)
+        throws FileNotFoundException, IOException{
+
+        return moveDirectory(in, out, DEFAULTBUFFERSIZE);
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Sposta in modo recursivo la directory sorgente nella directory
+     * destinazione, come {@link FileSystem#moveDir(File, File, int)}
+     * @param in La directory sorgente.
+     * @param out La directory destinazione.
+     * @param bufferSize La dimensione del buffer usato per la copia
+     * @return La strada percorsa per lo spostamento: se la destinazione
+     * non esiste e si trova sullo stesso filesystem la directory viene
+     * rinominata in modo atomico, altrimenti viene copiata e svuotata.
+     * In entrambi i casi, come per {@link FileSystem#moveDir(File, File, int)},
+     * al termine la directory sorgente esiste ed e' vuota.
+     * @throws FileNotFoundException Sollevata se la directory sorgente
+     * non esiste
+     * @throws IOException Sollevata in caso di errore di I/O
+     * durante la copia
+     */
+    public static MoveResult moveDirectory(File in,
+                                           File out,
+                                           int bufferSize)
+        throws FileNotFoundException, IOException{
+
+        if(in.isDirectory() && !out.exists()){
+            File parent = out.getAbsoluteFile().getParentFile();
+            if(parent != null && !parent.exists()){
+                //noinspection ResultOfMethodCallIgnored
+                parent.mkdirs();
+            }
+            if(rename(in, out)){
+                //Come nel caso della copia la sorgente resta, vuota
+                if(!in.mkdir()){
+                    throw new IOException("Directory spostata in " +
+                                          out.getPath() + ", ma impossibile " +
+                                          "ricreare la sorgente " +
+                                          in.getPath());
+                }
+                return MoveResult.RENAMED;
+            }
+        }
+
+        copyDirectory(in, out, true, null, bufferSize);
 
         cleanDir(in);
+        String[] left = in.list();
+        return left != null && left.length == 0 ? MoveResult.COPIED
+                                                : MoveResult.COPIED_SOURCE_KEPT;
     }
 
     ///////////////////////////////////////////////////////////////////////
@@ -373,6 +773,40 @@ public class FileSystem{
         return clean(dir, filter, true, minutes, safelevels);
     }
 
+    ///////////////////////////////////////////////////////////////////////
+    /** Effettua la stessa pulizia di
+     * {@link FileSystem#cleanExpired(File, FileFilter, int, int)}
+     * eseguendo le cancellazioni in parallelo, con un numero massimo
+     * di cancellazioni contemporanee. E' pensato per i filesystem di rete,
+     * dove ogni cancellazione costa soprattutto in latenza.
+     * Gli errori non interrompono la pulizia e sono riportati
+     * nel risultato.
+     * @param dir La directory sulla quale operare
+     * @param filter Un filtro che stabilisce quali file cancellare
+     * @param minutes Il numero di minuti superato il quale
+     * un file si considera scaduto.
+     * @param safelevels Come in
+     * {@link FileSystem#cleanExpired(File, FileFilter, int, int)}
+     * @param concurrency Il numero massimo di cancellazioni contemporanee;
+     * se minore o uguale a 0 viene usato il numero di processori.
+     * @throws IOException Scatenata se il path indicato come primo
+     * parametro e' errato o se la pulizia viene interrotta
+     * @return L'esito della pulizia: file e directory cancellati,
+     * byte recuperati, errori e durata
+     */
+    public static CleanResult reapExpired(File dir,
+                                          FileFilter filter,
+                                          int minutes,
+                                          int safelevels,
+                                          int concurrency)
+        throws IOException{
+
+        if(dir == null || !dir.isDirectory()){
+            throw new IOException("Il path indicato non e' una directory valida: " + dir);
+        }
+        return new ExpiredReaper(filter, minutes, safelevels, concurrency).run(dir);
+    }
+
     ///////////////////////////////////////////////////////////////////////
     /** Questo metodo effettua la cancellazione di un albero
      * di directories, agendo in modo recursivo.
@@ -506,6 +940,31 @@ public class FileSystem{
         return size;
     }
 
+    ///////////////////////////////////////////////////////////////////////
+    /**
+     * Ritorna un riepilogo del contenuto di una directory calcolato con
+     * un'unica visita parallela: dimensione totale (come
+     * {@link FileSystem#directorySize(File, boolean)}, ma senza percorrere
+     * i link simbolici a directory), numero di file e di subdirectory,
+     * i file piu' grandi e i byte occupati per ciascuna estensione.
+     *
+     * @param dir File directory da esaminare
+     * @param recursive boolean se true esamina anche tutte le subdirectory
+     * @param largest il numero di file piu' grandi da riportare
+     * @param parallelism il numero massimo di thread usati per la visita;
+     * se minore o uguale a 0 viene usato il numero di processori
+     *
+     * @return il riepilogo della directory
+     */
+    public static DirectorySummary directorySummary(File dir,
+                                                    boolean recursive,
+                                                    int largest,
+                                                    int parallelism){
+        if (dir==null) throw new IllegalArgumentException("Il parametro dir non puo' essere null");
+        if (!dir.isDirectory()) throw new IllegalArgumentException("Il parametro dir deve essere una directory valida");
+        return new ParallelDirScan(recursive, largest).run(dir, parallelism);
+    }
+
     ///////////////////////////////////////////////////////////////////////
     //Il metodo privato su cui poggiano le clean
     private static int clean(File dir,
@@ -515,48 +974,110 @@ public class FileSystem{
                              int safelevels)
         throws IOException{
 
-        int counter = 0; //Per il conteggio dei file cancellati
+        if(dir == null || !dir.isDirectory()){
+            throw new IOException("Il path indicato non e' una directory valida: " + dir);
+        }
 
-        assert dir!= null;
-        assert dir.isDirectory();
+        //La soglia di scadenza e' calcolata una sola volta; con 0 minuti
+        //sono scaduti tutti i file, anche quelli appena scritti
+        long cutoff = minutes <= 0 ? Long.MAX_VALUE :
+                      System.currentTimeMillis() - (long) minutes * 60 * 1000;
 
-        try{
-            //Listing della directory
-            File[] listing = dir.listFiles();
-            assert listing!=null;
+        CleanVisitor visitor = new CleanVisitor(filter, recursive, cutoff, safelevels);
+        Files.walkFileTree(dir.toPath(),
+                           EnumSet.of(FileVisitOption.FOLLOW_LINKS),
+                           Integer.MAX_VALUE,
+                           visitor);
+        return visitor.counter;
+    }
 
-            //Cancellazione recursiva
-            for(File listing1:listing){
-                if(listing1.isDirectory()){
-                    if(recursive){
-                        counter += clean(listing1, filter, true, minutes, safelevels - 1);
-                    }
-                }
-                else{
-                    Date now = new Date();
-                    long delta = now.getTime() - (long) minutes * 60 * 1000;
-                    if(listing1.lastModified() < delta){
-                        if(filter == null || filter.accept(listing1)){
-                            boolean delete = listing1.delete();
-                            if (!delete) System.err.println("Impossibile cancellare "+listing1.getPath());
-                            counter++;
-                        }
-                    }
+    ///////////////////////////////////////////////////////////////////////
+    //Visita su cui poggia clean: ogni elemento dell'albero viene letto
+    //una sola volta insieme ai suoi attributi; per stabilire se una
+    //directory e' rimasta vuota si tiene il conto degli elementi
+    //sopravvissuti invece di rifarne il listing.
+    private static final class CleanVisitor
+        extends SimpleFileVisitor<Path>{
+
+        private final FileAttributesFilter filter;
+
+        private final boolean recursive;
+
+        private final long cutoff;
+
+        private final int safelevels;
+
+        //Elementi rimasti in ciascuna directory aperta, dalla piu' interna
+        private final Deque<int[]> remaining = new ArrayDeque<>();
+
+        private int counter = 0; //Per il conteggio dei file cancellati
+
+        CleanVisitor(FileFilter filter, boolean recursive, long cutoff, int safelevels){
+            this.filter = filter == null ? null : FileAttributesFilter.of(filter);
+            this.recursive = recursive;
+            this.cutoff = cutoff;
+            this.safelevels = safelevels;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs){
+            if(!remaining.isEmpty() && !recursive){
+                keep();
+                return FileVisitResult.SKIP_SUBTREE;
+            }
+            remaining.push(new int[1]);
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path f, BasicFileAttributes attrs){
+            if(attrs.lastModifiedTime().toMillis() < cutoff &&
+               (filter == null || filter.accept(f, attrs))){
+                if(!delete(f)){
+                    keep();
                 }
+                counter++;
+            }
+            else{
+                keep();
             }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path f, IOException exc){
+            keep();
+            return FileVisitResult.CONTINUE;
+        }
 
-            File[] list= dir.listFiles();
-            assert list!=null;
-            if(list.length == 0 && safelevels <= 0){
-                boolean delete = dir.delete();
-                if (!delete) System.err.println("Impossibile cancellare "+dir.getPath());
+        @Override
+        public FileVisitResult postVisitDirectory(Path d, IOException exc){
+            int left = remaining.pop()[0];
+            //Livello della directory: la radice e' a 0
+            int level = remaining.size();
+            if(exc != null || left > 0 || safelevels - level > 0 || !delete(d)){
+                keep();
             }
-            return counter;
+            return FileVisitResult.CONTINUE;
         }
-        catch(IOException e){
-            throw(IOException)e.fillInStackTrace();
+
+        //Un elemento resta nella directory corrente
+        private void keep(){
+            if(!remaining.isEmpty()){
+                remaining.peek()[0]++;
+            }
+        }
+
+        private static boolean delete(Path p){
+            try{
+                Files.delete(p);
+                return true;
+            }
+            catch(IOException e){
+                System.err.println("Impossibile cancellare " + p);
+                return false;
+            }
         }
-        
     }
 
 
@@ -1,13 +1,10 @@
 package it.colaneri.file;
 
-import it.colaneri.time.Timestamp;
-import it.colaneri.util.Check;
 import it.colaneri.util.CheckException;
-import it.colaneri.util.MissingParameterException;
-import it.colaneri.util.StringUtils;
 
 import java.io.*;
 import java.util.Date;
+import java.util.List;
 import java.util.Properties;
 
 
@@ -126,102 +123,41 @@ public class FileUtils{
         return getFilenameFormat(fileformat, params, when, defaultValue);
     }
 
-    private static String getFilenameFormat(String fileformat,
-                                            Properties params, Date when,
-                                            String defaultValue)
-            throws CheckException{
-        checkFileformat(fileformat);
-        int smallerOfIndex = 0;
-        int greaterOfIndex;
-        String key, value;
-        String temp = fileformat;
-        while((smallerOfIndex = temp.indexOf('<', smallerOfIndex)) != -1){
-            greaterOfIndex = temp.indexOf('>', smallerOfIndex);
-            key = temp.substring(smallerOfIndex + 1, greaterOfIndex);
-            value = getValue(key, params, when, defaultValue);
-            temp = StringUtils.replace(temp, smallerOfIndex,
-                                       greaterOfIndex + 1, value);
-            smallerOfIndex += value.length();
-        }
-        return temp;
-    }
-
-    private static void checkFileformat(String fileformat)
-            throws CheckException{
-        char[] charArray = fileformat.toCharArray();
-        char nextSeparator = '<';
-        boolean closed = true;
-        for (char c : charArray) {
-            if (c == '<') {
-                if (nextSeparator == '>') {
-                    throw new CheckException();
-                }
-                nextSeparator = '>';
-                closed = false;
-            }
-            if (c == '>') {
-                if (nextSeparator == '<') {
-                    throw new CheckException();
-                }
-                nextSeparator = '<';
-                closed = true;
-            }
-        }
-        if(!closed){
-            throw new CheckException();
-        }
-    }
-
-    private static String getValue(String key, Properties params, Date when,
-                                   String defaultValue)
+    /* Ritorna i filename ottenuti sostituendo nel fileformat i tags ivi contenuti
+     * con ciascuno dei gruppi di Properties passati, in un solo passaggio.
+     * I comandi TS sono formattati una sola volta per pattern con la data
+     * passata, quindi tutti i filename riportano lo stesso timestamp.
+     * Se nel properties manca il valore di un tag viene utilizzato un valore
+     * di default (parametro defaultValue) o, se questo e' null, viene sollevata
+     * una MissingParameterException.
+     * @param fileformat Il fileformat su cui eseguire le sostituzioni
+     * @param params I gruppi di parametri da sostituire, uno per filename
+     * @param when La data da considerare per il comando TS (timestamp)
+     * @param defaultValue il valore di default da utilizzare nel caso in cui manchi
+     * nel properties il valore di un tag.
+     * @return I nomi dei file cosi' ottenuti, nello stesso ordine di params
+     */
+    public static List<String> filenameFormatAll(String fileformat,
+                                                 List<Properties> params,
+                                                 Date when, String defaultValue)
             throws CheckException{
-        String value;
-
-        if(key.charAt(0) == commandIdentifier){
-            return getCommand(key, when);
-        }
-
-        if(params == null){
-            throw new CheckException("Parametro params null");
-        }
-
-        value = params.getProperty(key);
-
-        if(value == null){
-            if(defaultValue == null){
-                throw new MissingParameterException(key);
-            }
-            else{
-                value = defaultValue;
-            }
-        }
-
-        return value;
+        return FilenameTemplate.compile(fileformat).renderAll(params, when, defaultValue);
     }
 
-    private static String getCommand(String key, Date when)
+    private static String getFilenameFormat(String fileformat,
+                                            Properties params, Date when,
+                                            String defaultValue)
             throws CheckException{
-        int index;
-        if((index = key.indexOf(':')) == -1){
-            throw new CheckException(
-                    "Errore di sintassi: carattere ':' mancante");
-        }
-        String command = key.substring(1, index);
-        if(command.equals("TS")){
-            if(when == null){
-                throw new CheckException("Data passata non corretta");
-            }
-            String pattern = Check.simpleDateFormat(key, key.substring(index + 1));
-            return new Timestamp(pattern).toString();
-        }
-        else{
-            throw new CheckException("Comando non supportato: " + command);
-        }
+        return FilenameTemplate.compile(fileformat).render(params, when, defaultValue);
     }
 
     ////////////////////////////////////////////////////////////////////////////
     //                          supporto utf-8                                //
     ////////////////////////////////////////////////////////////////////////////
+    /**
+     * @deprecated Legge un byte alla volta: usare {@link LineReader}
+     */
+    @Deprecated
     public static String readLine(FileInputStream in, String charset)
             throws IOException{
         return readLine((InputStream)in, charset);
@@ -234,7 +170,11 @@ public class FileUtils{
      * @param charset charset
      * @return String la linea letta
      * @throws IOException in caso di errore
+     * @deprecated Legge un byte alla volta e alloca un buffer per riga: per
+     * leggere molte righe usare {@link LineReader}, che a differenza di questo
+     * metodo non elimina le tabulazioni e non esegue il trim delle righe
      */
+    @Deprecated
     public static String readLine(InputStream in, String charset)
             throws IOException{
         ByteArrayOutputStream bo = new ByteArrayOutputStream();
@@ -249,6 +189,26 @@ public class FileUtils{
         return bo.toString(charset).trim();
     }
 
+    /**
+     * Istanzia un {@link LineReader} sul file
+     *
+     * @param file il file
+     * @param charset il charset; se null viene usato {@link Defaults#TEXT_FILE_ENCODING}
+     * @return un LineReader da chiudere al termine
+     * @throws IOException in caso di errore
+     */
+    public static LineReader getLineReader(File file, String charset)
+            throws IOException{
+        InputStream in = new FileInputStream(file);
+        try{
+            return charset != null ? new LineReader(in, charset) : new LineReader(in);
+        }
+        catch(RuntimeException e){
+            in.close();
+            throw e;
+        }
+    }
+
     /**
      * Controlla se IL fILE passato ha come primi 3 bytes
      * il BOM utf-8
@@ -281,9 +241,9 @@ public class FileUtils{
     public static boolean checkBOM(InputStream in)
             throws IOException{
         byte[] b = new byte[3];
-        if(in != null && in.available() > 0){
+        if(in != null){
             //noinspection ResultOfMethodCallIgnored
-            in.read(b);//leggo i primi 3 bytes
+            in.readNBytes(b, 0, b.length);//leggo i primi 3 bytes
         }
         return checkBOM(b);
     }
@@ -368,8 +328,30 @@ public class FileUtils{
     public static OutputStreamWriter getFileWriter(File file, String charset,
                                                    boolean append)
             throws IOException{
+        return FileUtils.getFileWriter(file, charset, append, false);
+    }
+
+    /**
+     * Istanzia il writer corretto in base al charset, se UTF-8 SCRIVE IL BOM AUTOMATICAMENTE.
+     * In modalita' atomica i dati sono scritti in un file temporaneo (vedi
+     * {@link FileUtils#changeExtension(String)}) che alla chiusura del writer viene
+     * sincronizzato sul disco e rinominato sul file: chi legge il file non ne vede
+     * mai un contenuto parziale. Per scartare i dati in caso di errore usare
+     * direttamente {@link AtomicFileOutputStream}.
+     *
+     * @param file il file per cui si vuole ottenere il writer
+     * @param charset il charset
+     * @param append se si vuole appendere
+     * @param atomic se si vuole sostituire il file solo alla chiusura del writer
+     * @return un OutputStreamWriter con charset specificato
+     * @throws IOException in caso di errore
+     */
+    public static OutputStreamWriter getFileWriter(File file, String charset,
+                                                   boolean append, boolean atomic)
+            throws IOException{
         OutputStreamWriter writer;
-        FileOutputStream f_out = new FileOutputStream(file, append); //apro lo stream di scrittura in append
+        OutputStream f_out = atomic ? new AtomicFileOutputStream(file, append)
+                                    : new FileOutputStream(file, append); //apro lo stream di scrittura in append
         // scelta del charset
         if(charset != null){
             writer = new OutputStreamWriter(f_out, charset);
@@ -418,26 +400,30 @@ public class FileUtils{
      * --------
      * - N.B. -
      * --------
-     * Nel caso in cui il file sia stato formattato in utf-8 restituisce un Reader
-     * che ha gia' skippato il primi 3 byte (BOM)
+     * Se il file inizia con un BOM (UTF-8, UTF-16LE/BE, UTF-32LE/BE) restituisce
+     * un Reader che ha gia' skippato il BOM e che usa il charset da esso indicato,
+     * indipendentemente da quello passato. Il file viene aperto una sola volta
+     * (vedi {@link BOMInputStream}).
      *
      * @param file il file
-     * @param charset il charset
+     * @param charset il charset da usare in assenza di BOM; se null quello di default
      * @return un InputStreamReader
      * @throws IOException in caso di errore
      */
     public static InputStreamReader getFileReader(File file, String charset)
             throws IOException{
-        if(charset != null){
-            InputStreamReader i = new InputStreamReader(new FileInputStream(file), charset);
-            if(charset.equalsIgnoreCase("UTF-8") && FileUtils.checkBOM(file)){
-                //noinspection ResultOfMethodCallIgnored
-                i.skip(1); //serve per skippare il BOM
+        FileInputStream f_in = new FileInputStream(file);
+        try{
+            BOMInputStream in = new BOMInputStream(f_in);
+            if(in.hasBOM()){
+                return new InputStreamReader(in, in.getCharset());
             }
-            return i;
+            return charset != null ? new InputStreamReader(in, charset)
+                                   : new InputStreamReader(in);
         }
-        else{
-            return new InputStreamReader(new FileInputStream(file));
+        catch(IOException | RuntimeException e){
+            f_in.close();
+            throw e;
         }
     }
 
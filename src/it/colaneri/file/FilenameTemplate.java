@@ -0,0 +1,300 @@
+package it.colaneri.file;
+
+import it.colaneri.time.Timestamp;
+import it.colaneri.util.Check;
+import it.colaneri.util.CheckException;
+import it.colaneri.util.MissingParameterException;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fileformat compilato, usato da
+ * {@link FileUtils#filenameFormat(String, Properties, Date, String)}.
+ * Il fileformat viene verificato e scomposto una sola volta in una sequenza
+ * di testi fissi e di tags (es: <VARIABILE1>, <@TS:yyyyMMdd>); i comandi
+ * usano i formattatori condivisi di {@link Timestamp}. I fileformat compilati sono condivisi
+ * tramite {@link #compile(String)} e possono essere usati da piu' thread.
+ */
+public final class FilenameTemplate{
+
+    //Oltre questo numero di fileformat diversi la cache viene svuotata
+    private static final int MAX_CACHED = 1024;
+
+    private static final Map<String, FilenameTemplate> CACHE = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<StringBuilder> BUILDER =
+        ThreadLocal.withInitial(() -> new StringBuilder(128));
+
+    private final String fileformat;
+
+    private final Segment[] segments;
+
+    private FilenameTemplate(String fileformat, Segment[] segments){
+        this.fileformat = fileformat;
+        this.segments = segments;
+    }
+
+    /**
+     * Ritorna il fileformat compilato, riusando quello gia' compilato se presente
+     *
+     * @param fileformat il fileformat
+     * @return il fileformat compilato
+     * @throws CheckException se il fileformat non e' sintatticamente corretto
+     */
+    public static FilenameTemplate compile(String fileformat)
+            throws CheckException{
+        FilenameTemplate template = CACHE.get(fileformat);
+        if(template == null){
+            template = parse(fileformat);
+            if(CACHE.size() >= MAX_CACHED){
+                CACHE.clear();
+            }
+            CACHE.putIfAbsent(fileformat, template);
+        }
+        return template;
+    }
+
+    /**
+     * Ritorna il filename ottenuto sostituendo i tags con le Properties passate
+     *
+     * @param params i parametri da sostituire
+     * @param when la data da considerare per il comando TS (timestamp)
+     * @param defaultValue il valore da usare se nel properties manca il valore
+     * di un tag; se null viene sollevata una MissingParameterException
+     * @return il nome del file cosi' ottenuto
+     * @throws CheckException in caso di parametri non corretti
+     */
+    public String render(Properties params, Date when, String defaultValue)
+            throws CheckException{
+        StringBuilder sb = BUILDER.get();
+        sb.setLength(0);
+        renderTo(sb, params, when, defaultValue);
+        return sb.toString();
+    }
+
+    /**
+     * Accoda a sb il filename ottenuto sostituendo i tags con le Properties passate
+     *
+     * @param sb il buffer su cui scrivere
+     * @param params i parametri da sostituire
+     * @param when la data da considerare per il comando TS (timestamp)
+     * @param defaultValue il valore da usare se nel properties manca il valore
+     * di un tag; se null viene sollevata una MissingParameterException
+     * @throws CheckException in caso di parametri non corretti
+     */
+    public void renderTo(StringBuilder sb, Properties params, Date when,
+                         String defaultValue)
+            throws CheckException{
+        for(Segment segment:segments){
+            segment.append(sb, params, when, defaultValue);
+        }
+    }
+
+    /**
+     * Ritorna i filename ottenuti sostituendo i tags con ciascuno dei gruppi
+     * di Properties passati. I comandi TS sono formattati una sola volta per
+     * pattern, quindi tutti i filename riportano lo stesso timestamp.
+     *
+     * @param params i gruppi di parametri da sostituire, uno per filename
+     * @param when la data da considerare per il comando TS (timestamp)
+     * @param defaultValue il valore da usare se nel properties manca il valore
+     * di un tag; se null viene sollevata una MissingParameterException
+     * @return i nomi dei file, nello stesso ordine di params
+     * @throws CheckException in caso di parametri non corretti
+     */
+    public List<String> renderAll(List<Properties> params, Date when,
+                                  String defaultValue)
+            throws CheckException{
+        Segment[] resolved = resolveCommands(when);
+        List<String> names = new ArrayList<>(params.size());
+        StringBuilder sb = BUILDER.get();
+        for(Properties p:params){
+            sb.setLength(0);
+            for(Segment segment:resolved){
+                segment.append(sb, p, when, defaultValue);
+            }
+            names.add(sb.toString());
+        }
+        return names;
+    }
+
+    //Sostituisce i comandi con il loro valore per la data indicata
+    private Segment[] resolveCommands(Date when)
+            throws CheckException{
+        Segment[] resolved = segments.clone();
+        Map<String, Literal> values = null;
+        for(int i = 0; i < resolved.length; i++){
+            if(resolved[i] instanceof TimestampCommand){
+                if(when == null){
+                    throw new CheckException("Data passata non corretta");
+                }
+                TimestampCommand command = (TimestampCommand)resolved[i];
+                if(values == null){
+                    values = new HashMap<>();
+                }
+                resolved[i] = values.computeIfAbsent(
+                    command.pattern, k -> new Literal(command.format(when)));
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * @return il fileformat compilato
+     */
+    @Override
+    public String toString(){
+        return fileformat;
+    }
+
+    private static FilenameTemplate parse(String fileformat)
+            throws CheckException{
+        checkFileformat(fileformat);
+        List<Segment> segments = new ArrayList<>();
+        int start = 0;
+        int smallerOfIndex;
+        while((smallerOfIndex = fileformat.indexOf('<', start)) != -1){
+            int greaterOfIndex = fileformat.indexOf('>', smallerOfIndex);
+            if(smallerOfIndex > start){
+                segments.add(new Literal(fileformat.substring(start, smallerOfIndex)));
+            }
+            segments.add(tag(fileformat.substring(smallerOfIndex + 1, greaterOfIndex)));
+            start = greaterOfIndex + 1;
+        }
+        if(start < fileformat.length()){
+            segments.add(new Literal(fileformat.substring(start)));
+        }
+        return new FilenameTemplate(fileformat, segments.toArray(new Segment[0]));
+    }
+
+    private static void checkFileformat(String fileformat)
+            throws CheckException{
+        char nextSeparator = '<';
+        boolean closed = true;
+        for(int i = 0; i < fileformat.length(); i++){
+            char c = fileformat.charAt(i);
+            if(c == '<'){
+                if(nextSeparator == '>'){
+                    throw new CheckException();
+                }
+                nextSeparator = '>';
+                closed = false;
+            }
+            if(c == '>'){
+                if(nextSeparator == '<'){
+                    throw new CheckException();
+                }
+                nextSeparator = '<';
+                closed = true;
+            }
+        }
+        if(!closed){
+            throw new CheckException();
+        }
+    }
+
+    private static Segment tag(String key)
+            throws CheckException{
+        if(key.isEmpty()){
+            throw new CheckException("Errore di sintassi: tag vuoto");
+        }
+        if(key.charAt(0) != FileUtils.commandIdentifier){
+            return new Param(key);
+        }
+
+        int index;
+        if((index = key.indexOf(':')) == -1){
+            throw new CheckException(
+                    "Errore di sintassi: carattere ':' mancante");
+        }
+        String command = key.substring(1, index);
+        if(command.equals("TS")){
+            return new TimestampCommand(Check.simpleDateFormat(key, key.substring(index + 1)));
+        }
+        else{
+            throw new CheckException("Comando non supportato: " + command);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //Una parte del fileformat
+    private abstract static class Segment{
+
+        abstract void append(StringBuilder sb, Properties params, Date when,
+                             String defaultValue)
+                throws CheckException;
+    }
+
+    //Testo fisso
+    private static final class Literal extends Segment{
+
+        private final String text;
+
+        Literal(String text){
+            this.text = text;
+        }
+
+        @Override
+        void append(StringBuilder sb, Properties params, Date when,
+                    String defaultValue){
+            sb.append(text);
+        }
+    }
+
+    //Tag sostituito con il valore del parametro omonimo
+    private static final class Param extends Segment{
+
+        private final String key;
+
+        Param(String key){
+            this.key = key;
+        }
+
+        @Override
+        void append(StringBuilder sb, Properties params, Date when,
+                    String defaultValue)
+                throws CheckException{
+            if(params == null){
+                throw new CheckException("Parametro params null");
+            }
+            String value = params.getProperty(key);
+            if(value == null){
+                if(defaultValue == null){
+                    throw new MissingParameterException(key);
+                }
+                value = defaultValue;
+            }
+            sb.append(value);
+        }
+    }
+
+    //Comando TS: la data indicata nel formato indicato
+    private static final class TimestampCommand extends Segment{
+
+        private final String pattern;
+
+        TimestampCommand(String pattern){
+            this.pattern = pattern;
+        }
+
+        String format(Date when){
+            return Timestamp.format(pattern, when);
+        }
+
+        @Override
+        void append(StringBuilder sb, Properties params, Date when,
+                    String defaultValue)
+                throws CheckException{
+            if(when == null){
+                throw new CheckException("Data passata non corretta");
+            }
+            sb.append(format(when));
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package it.colaneri.file;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Indice delle posizioni d'inizio riga di un file di testo, usato da
+ * {@link MappedTextFile}. L'indice puo' essere salvato in un file
+ * accessorio (il nome del file seguito da {@link #EXTENSION}) che
+ * riporta dimensione e data di ultima modifica del file indicizzato:
+ * se queste non coincidono piu' l'indice viene considerato scaduto.
+ * Un indice valido viene mappato in memoria, senza copiarlo nello heap.
+ */
+final class LineIndex {
+
+	/** Estensione del file accessorio con l'indice */
+	static final String EXTENSION = ".idx";
+
+	private static final int MAGIC = 0x4C494458; // "LIDX"
+
+	private static final int VERSION = 1;
+
+	/** magic, versione, dimensione, data, numero di righe, riservato */
+	private static final int HEADER_SIZE = 32;
+
+	private LineIndex() {
+	}
+
+	/**
+	 * Scandisce il file mappato alla ricerca dei "\n"
+	 * @param segments i segmenti mappati
+	 * @param segmentSize la dimensione di ogni segmento tranne l'ultimo
+	 * @param length la dimensione del file
+	 * @return le posizioni d'inizio di ogni riga seguite dalla fine del file
+	 */
+	static long[] build(MappedByteBuffer[] segments, int segmentSize, long length) {
+		long[] found = new long[1024];
+		int n = 0;
+		long start = 0;
+		for (int s = 0; s < segments.length; s++) {
+			MappedByteBuffer segment = segments[s];
+			long base = (long) s * segmentSize;
+			int limit = segment.limit();
+			for (int i = 0; i < limit; i++) {
+				if (segment.get(i) == '\n') {
+					if (n + 1 >= found.length)
+						found = Arrays.copyOf(found, found.length * 2);
+					found[n++] = start;
+					start = base + i + 1;
+				}
+			}
+		}
+		// Ultima riga senza "\n" finale
+		if (start < length) {
+			if (n + 1 >= found.length)
+				found = Arrays.copyOf(found, found.length + 1);
+			found[n++] = start;
+		}
+		found[n] = length;
+		return Arrays.copyOf(found, n + 1);
+	}
+
+	/**
+	 * @param file il file indicizzato
+	 * @return il file accessorio con l'indice
+	 */
+	static Path sidecar(Path file) {
+		return file.resolveSibling(file.getFileName() + EXTENSION);
+	}
+
+	/**
+	 * Mappa l'indice salvato, se valido
+	 * @param sidecar il file accessorio
+	 * @param size la dimensione attuale del file indicizzato
+	 * @param lastModified la data di ultima modifica attuale del file indicizzato
+	 * @return le posizioni delle righe, o null se l'indice manca o e' scaduto
+	 */
+	static LongBuffer load(Path sidecar, long size, long lastModified) {
+		try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.READ)) {
+			long length = channel.size();
+			if (length < HEADER_SIZE || length > Integer.MAX_VALUE)
+				return null;
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+			if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION
+					|| map.getLong(8) != size || map.getLong(16) != lastModified)
+				return null;
+			int lines = map.getInt(24);
+			if (lines < 0 || length != HEADER_SIZE + 8L * (lines + 1))
+				return null;
+			return map.position(HEADER_SIZE).slice().asLongBuffer();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Salva l'indice nel file accessorio, scrivendo prima un file
+	 * temporaneo con nome univoco poi rinominato, cosi' che un lettore non
+	 * veda mai un indice incompleto e che due processi che indicizzano lo
+	 * stesso file non si sovrascrivano il temporaneo
+	 * @param sidecar il file accessorio
+	 * @param size la dimensione del file indicizzato
+	 * @param lastModified la data di ultima modifica del file indicizzato
+	 * @param offsets le posizioni delle righe
+	 * @throws IOException in caso di errore
+	 */
+	static void save(Path sidecar, long size, long lastModified, long[] offsets) throws IOException {
+		Path tmp = Files.createTempFile(sidecar.toAbsolutePath().getParent(),
+				sidecar.getFileName().toString(), ".tmp");
+		try (OutputStream os = Files.newOutputStream(tmp);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 64 * 1024))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(size);
+			out.writeLong(lastModified);
+			out.writeInt(offsets.length - 1);
+			out.writeInt(0);
+			for (long offset : offsets)
+				out.writeLong(offset);
+		} catch (IOException e) {
+			Files.deleteIfExists(tmp);
+			throw e;
+		}
+		try {
+			Files.move(tmp, sidecar, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			Files.deleteIfExists(tmp);
+			throw e;
+		}
+	}
+}
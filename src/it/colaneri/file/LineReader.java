@@ -0,0 +1,190 @@
+package it.colaneri.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * Lettura veloce di un file di testo riga per riga. A differenza di
+ * {@link FileUtils#readLine(InputStream, String)} lo stream viene letto
+ * a blocchi in un buffer interno, nel quale i terminatori di riga sono
+ * cercati direttamente sui byte; ogni riga viene poi decodificata con un
+ * {@link CharsetDecoder} riusato, in un buffer di caratteri anch'esso
+ * riusato, senza allocazioni per riga.
+ * {@link #nextLine()} restituisce una vista sulla riga valida fino alla
+ * lettura successiva; {@link #readLine()} la copia in una stringa.
+ * Le righe sono terminate da "\n", "\r\n" o "\r". Il charset deve
+ * codificare "\n" e "\r" con un solo byte (UTF-8, ISO-8859-x, windows-125x);
+ * i byte non validi sono sostituiti.
+ */
+public class LineReader implements Closeable {
+
+	/** Dimensione predefinita del buffer */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	private final InputStream in;
+
+	private final CharsetDecoder decoder;
+
+	private final byte[] buf;
+
+	private final ByteBuffer bytes;
+
+	private int pos;
+
+	private int limit;
+
+	private boolean eof;
+
+	// Un "\r" ha chiuso la riga precedente: un "\n" successivo va scartato
+	private boolean skipLF;
+
+	// Riga a cavallo di due letture del buffer
+	private byte[] pending = new byte[256];
+
+	private ByteBuffer pendingBytes = ByteBuffer.wrap(pending);
+
+	private int pendingLength;
+
+	private CharBuffer chars = CharBuffer.allocate(256);
+
+	/**
+	 * Legge lo stream con {@link Defaults#TEXT_FILE_ENCODING}
+	 * @param in lo stream da leggere
+	 */
+	public LineReader(InputStream in) {
+		this(in, Charset.forName(Defaults.TEXT_FILE_ENCODING), DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param in lo stream da leggere
+	 * @param charset il charset
+	 */
+	public LineReader(InputStream in, String charset) {
+		this(in, Charset.forName(charset), DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param in lo stream da leggere
+	 * @param charset il charset
+	 * @param bufferSize la dimensione del buffer in byte
+	 */
+	public LineReader(InputStream in, Charset charset, int bufferSize) {
+		if (bufferSize <= 0)
+			throw new IllegalArgumentException("Dimensione del buffer non valida: " + bufferSize);
+		if (!Arrays.equals("\n\r".getBytes(charset), new byte[] { '\n', '\r' }))
+			throw new IllegalArgumentException("Charset non supportato: " + charset);
+		this.in = in;
+		this.decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.buf = new byte[bufferSize];
+		this.bytes = ByteBuffer.wrap(buf);
+	}
+
+	/**
+	 * Legge la riga successiva. La vista restituita e' riusata dalla
+	 * lettura successiva: per conservarla va copiata (ad esempio con
+	 * toString()) oppure va usato {@link #readLine()}
+	 * @return la riga senza terminatore, o null a fine stream
+	 * @throws IOException in caso di errore
+	 */
+	public CharSequence nextLine() throws IOException {
+		pendingLength = 0;
+		while (true) {
+			if (pos >= limit && !fill()) {
+				// Fine stream: l'ultima riga puo' non avere terminatore
+				if (pendingLength == 0)
+					return null;
+				pendingBytes.limit(pendingLength).position(0);
+				return decode(pendingBytes);
+			}
+			if (skipLF) {
+				skipLF = false;
+				if (buf[pos] == '\n') {
+					pos++;
+					continue;
+				}
+			}
+
+			int start = pos;
+			int i = start;
+			while (i < limit && buf[i] != '\n' && buf[i] != '\r')
+				i++;
+			if (i == limit) {
+				append(start, limit - start);
+				pos = limit;
+				continue;
+			}
+
+			skipLF = buf[i] == '\r';
+			pos = i + 1;
+			if (pendingLength == 0) {
+				bytes.limit(i).position(start);
+				return decode(bytes);
+			}
+			append(start, i - start);
+			pendingBytes.limit(pendingLength).position(0);
+			return decode(pendingBytes);
+		}
+	}
+
+	/**
+	 * Legge la riga successiva copiandola in una stringa
+	 * @return la riga senza terminatore, o null a fine stream
+	 * @throws IOException in caso di errore
+	 */
+	public String readLine() throws IOException {
+		CharSequence line = nextLine();
+		return line == null ? null : line.toString();
+	}
+
+	/**
+	 * Chiude lo stream
+	 * @throws IOException in caso di errore
+	 */
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	private boolean fill() throws IOException {
+		if (eof)
+			return false;
+		int n = in.read(buf, 0, buf.length);
+		if (n <= 0) {
+			eof = n < 0;
+			pos = limit = 0;
+			return !eof && fill();
+		}
+		pos = 0;
+		limit = n;
+		return true;
+	}
+
+	private void append(int start, int length) {
+		if (pendingLength + length > pending.length) {
+			pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + length));
+			pendingBytes = ByteBuffer.wrap(pending);
+		}
+		System.arraycopy(buf, start, pending, pendingLength, length);
+		pendingLength += length;
+	}
+
+	private CharSequence decode(ByteBuffer src) {
+		int needed = (int) (src.remaining() * (double) decoder.maxCharsPerByte()) + 1;
+		if (chars.capacity() < needed)
+			chars = CharBuffer.allocate(Math.max(chars.capacity() * 2, needed));
+		chars.clear();
+		decoder.reset();
+		decoder.decode(src, chars, true);
+		decoder.flush(chars);
+		return chars.flip();
+	}
+}
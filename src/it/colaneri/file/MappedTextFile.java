@@ -0,0 +1,173 @@
+package it.colaneri.file;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Accesso casuale per indice alle righe di un file di testo mappato in
+ * memoria. A differenza di {@link TextFile} il contenuto non viene copiato
+ * nello heap: alla costruzione si registra soltanto la posizione d'inizio
+ * di ogni riga, e {@link #get(int)} decodifica solo la riga richiesta.
+ * L'indice delle righe puo' essere reso persistente, cosi' da non dover
+ * riscandire il file ad ogni apertura.
+ * Le righe sono separate da "\n" (un eventuale "\r" finale viene scartato)
+ * e decodificate con {@link Defaults#TEXT_FILE_ENCODING}.
+ * La lista e' in sola lettura e va chiusa con {@link #close()}.
+ */
+public class MappedTextFile extends AbstractList<String> implements RandomAccess, Closeable {
+
+	/** Dimensione dei segmenti in cui viene mappato il file */
+	private static final int SEGMENT_SIZE = 1 << 30;
+
+	private static final Charset CHARSET = Charset.forName(Defaults.TEXT_FILE_ENCODING);
+
+	private final long length;
+
+	private volatile MappedByteBuffer[] segments;
+
+	//Posizione d'inizio di ogni riga; l'elemento in piu' e' la fine del file
+	private final LongBuffer offsets;
+
+	private final int lines;
+
+	/**
+	 * Mappa il file e ne indicizza le righe
+	 * @param fileName il nome del file
+	 * @throws IOException in caso di errore
+	 */
+	public MappedTextFile(String fileName) throws IOException {
+		this(fileName, false);
+	}
+
+	/**
+	 * Mappa il file e ne indicizza le righe. Con l'indice persistente le
+	 * posizioni delle righe vengono salvate accanto al file (vedi
+	 * {@link #indexFile(String)}) e riusate alle aperture successive,
+	 * finche' dimensione e data di ultima modifica del file non cambiano:
+	 * in quel caso il file non viene piu' scandito e l'indice stesso
+	 * viene mappato in memoria invece di essere caricato nello heap.
+	 * Se l'indice non puo' essere salvato viene usato solo in memoria.
+	 * @param fileName il nome del file
+	 * @param persistentIndex abilita l'indice persistente
+	 * @throws IOException in caso di errore
+	 */
+	public MappedTextFile(String fileName, boolean persistentIndex) throws IOException {
+		Path path = new File(fileName).getAbsoluteFile().toPath();
+		// Gli attributi sono letti prima della mappatura: se il file cambia
+		// nel frattempo l'indice salvato risultera' scaduto
+		BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+		long lastModified = attrs.lastModifiedTime().toMillis();
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			length = channel.size();
+			int count = (int) ((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+			MappedByteBuffer[] mapped = new MappedByteBuffer[count];
+			for (int i = 0; i < count; i++) {
+				long position = (long) i * SEGMENT_SIZE;
+				mapped[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+						Math.min(SEGMENT_SIZE, length - position));
+			}
+			segments = mapped;
+		}
+
+		LongBuffer index = null;
+		if (persistentIndex && length == attrs.size())
+			index = LineIndex.load(LineIndex.sidecar(path), length, lastModified);
+		if (index == null) {
+			long[] built = LineIndex.build(segments, SEGMENT_SIZE, length);
+			if (persistentIndex && length == attrs.size()) {
+				try {
+					LineIndex.save(LineIndex.sidecar(path), length, lastModified, built);
+				} catch (IOException e) {
+					// indice usato solo in memoria
+				}
+			}
+			index = LongBuffer.wrap(built);
+		}
+		offsets = index;
+		lines = index.limit() - 1;
+	}
+
+	/**
+	 * Ritorna il file accessorio in cui viene salvato l'indice persistente
+	 * delle righe
+	 * @param fileName il nome del file indicizzato
+	 * @return il file con l'indice
+	 */
+	public static File indexFile(String fileName) {
+		return LineIndex.sidecar(new File(fileName).getAbsoluteFile().toPath()).toFile();
+	}
+
+	/**
+	 * Ritorna la riga specificata, decodificando solo i suoi byte
+	 * @param index l'indice della riga, a partire da 0
+	 * @return la riga senza terminatore
+	 */
+	@Override
+	public String get(int index) {
+		if (index < 0 || index >= lines)
+			throw new IndexOutOfBoundsException("Riga " + index + " di " + lines);
+		MappedByteBuffer[] mapped = segments;
+		if (mapped == null)
+			throw new IllegalStateException("File chiuso");
+
+		long start = offsets.get(index);
+		long end = offsets.get(index + 1);
+		// Scarta il terminatore "\n" ed eventualmente "\r"
+		if (end > start && byteAt(mapped, end - 1) == '\n')
+			end--;
+		if (end > start && byteAt(mapped, end - 1) == '\r')
+			end--;
+
+		byte[] bytes = new byte[(int) (end - start)];
+		int copied = 0;
+		while (copied < bytes.length) {
+			long position = start + copied;
+			MappedByteBuffer segment = mapped[(int) (position / SEGMENT_SIZE)];
+			int from = (int) (position % SEGMENT_SIZE);
+			int n = Math.min(bytes.length - copied, segment.limit() - from);
+			segment.get(from, bytes, copied, n);
+			copied += n;
+		}
+		return new String(bytes, CHARSET);
+	}
+
+	private static byte byteAt(MappedByteBuffer[] mapped, long position) {
+		return mapped[(int) (position / SEGMENT_SIZE)].get((int) (position % SEGMENT_SIZE));
+	}
+
+	/**
+	 * @return il numero di righe del file
+	 */
+	@Override
+	public int size() {
+		return lines;
+	}
+
+	/**
+	 * @return la dimensione del file in byte
+	 */
+	public long length() {
+		return length;
+	}
+
+	/**
+	 * Rilascia i riferimenti alle mappature; la memoria viene restituita
+	 * al sistema quando le mappature vengono raccolte dal garbage collector
+	 */
+	@Override
+	public void close() {
+		segments = null;
+	}
+}
@@ -0,0 +1,24 @@
+package it.colaneri.file;
+
+///////////////////////////////////////////////////////////////////////////
+/** Esito di uno spostamento effettuato tramite {@link FileSystem}:
+ * indica quale strada e' stata percorsa per spostare i dati.
+ */
+public enum MoveResult{
+    /** Spostamento effettuato con una rename atomica sullo stesso filesystem */
+    RENAMED,
+    /** Spostamento effettuato copiando i dati e cancellando la sorgente */
+    COPIED,
+    /** I dati sono stati copiati ma non e' stato possibile
+     * cancellare la sorgente */
+    COPIED_SOURCE_KEPT;
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Indica se la sorgente e' stata rimossa.
+     * @return true se la sorgente e' stata rinominata o cancellata
+     * dopo la copia; false altrimenti.
+     */
+    public boolean isSourceRemoved(){
+        return this != COPIED_SOURCE_KEPT;
+    }
+}
@@ -0,0 +1,414 @@
+package it.colaneri.file;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+///////////////////////////////////////////////////////////////////////////
+/** Copia di un albero di directory su un {@link ForkJoinPool} dedicato:
+ * ogni directory diventa un task indipendente, e cosi' ogni file grande
+ * o gruppo di file piccoli della stessa directory, in modo che le copie
+ * procedano in parallelo fino al limite di parallelismo richiesto.
+ * Il filtro e la recursione seguono le stesse regole di
+ * {@link FileSystem#copyDir(File, File, boolean, FileFilter, int)}.
+ * Con un {@link SyncMode} diverso da {@link SyncMode#ALWAYS} i file gia'
+ * aggiornati nella destinazione vengono saltati; la destinazione di
+ * ogni directory viene letta una sola volta, cosi' che ogni file
+ * costi un solo stat per lato. Il confronto con la destinazione avviene
+ * nel task di copia del file, quindi anche i confronti dei contenuti
+ * procedono in parallelo.
+ * Quando la destinazione viene letta (sincronizzazione o cancellazione
+ * dei file non piu' presenti), un file della destinazione che ha il nome
+ * di una directory della sorgente, o viceversa, viene cancellato e
+ * sostituito; altrimenti, come per
+ * {@link FileSystem#copyDir(File, File, boolean, FileFilter, int)},
+ * la copia si interrompe con un errore.
+ */
+final class ParallelDirCopy{
+
+    /** Dimensione dei buffer usati per il confronto dei contenuti */
+    private static final int COMPAREBUFFERSIZE = 64 * 1024;
+
+    /** I file piu' piccoli sono raggruppati in un solo task fino a
+     * questo totale di byte... */
+    private static final long BATCHBYTES = 8L * 1024 * 1024;
+
+    /** ...o fino a questo numero di file */
+    private static final int BATCHFILES = 64;
+
+    private final boolean recursive;
+
+    private final FileFilter filter;
+
+    private final int bufferSize;
+
+    private final SyncMode mode;
+
+    private final boolean deleteExtraneous;
+
+    private final LongAdder files = new LongAdder();
+
+    private final LongAdder bytes = new LongAdder();
+
+    private final LongAdder skipped = new LongAdder();
+
+    private final LongAdder deleted = new LongAdder();
+
+    ///////////////////////////////////////////////////////////////////////
+    ParallelDirCopy(boolean recursive, FileFilter filter, int bufferSize){
+        this(recursive, filter, bufferSize, SyncMode.ALWAYS, false);
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    ParallelDirCopy(boolean recursive, FileFilter filter, int bufferSize,
+                    SyncMode mode, boolean deleteExtraneous){
+        this.recursive = recursive;
+        this.filter = filter;
+        this.bufferSize = bufferSize;
+        this.mode = mode;
+        this.deleteExtraneous = deleteExtraneous;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Esegue la copia
+     * @param in La directory sorgente, gia' verificata
+     * @param out La directory destinazione
+     * @param parallelism Il numero massimo di copie contemporanee;
+     * se minore o uguale a 0 viene usato il numero di processori
+     * @return Le statistiche della copia
+     * @throws IOException Sollevata al primo errore di I/O
+     */
+    CopyStats run(File in, File out, int parallelism)
+        throws IOException{
+
+        if(parallelism <= 0){
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try{
+            pool.invoke(new DirTask(in, out, null));
+        }
+        catch(RuntimeException e){
+            throw unwrap(e);
+        }
+        finally{
+            pool.shutdown();
+        }
+        long elapsed = (System.nanoTime() - start) / 1000000;
+
+        return new CopyStats(files.sum(), bytes.sum(),
+                             skipped.sum(), deleted.sum(), elapsed);
+    }
+
+    //Riporta alla luce la IOException originale sollevata da un task
+    private static IOException unwrap(RuntimeException e){
+        for(Throwable t = e; t != null; t = t.getCause()){
+            if(t instanceof IOException){
+                return (IOException)t;
+            }
+        }
+        throw e;
+    }
+
+    //Cancella un albero della destinazione senza seguire i link simbolici:
+    //un link viene rimosso come un file, senza toccare cio' a cui punta.
+    //Restituisce il numero di file (e link) cancellati, come
+    //FileSystem.eraseDir.
+    private static long erase(Path dir)
+        throws IOException{
+
+        long[] counter = new long[1];
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>(){
+            @Override
+            public FileVisitResult visitFile(Path f, BasicFileAttributes attrs)
+                throws IOException{
+
+                Files.delete(f);
+                counter[0]++;
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path d, IOException exc)
+                throws IOException{
+
+                if(exc != null){
+                    throw exc;
+                }
+                Files.delete(d);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return counter[0];
+    }
+
+    //Listing della destinazione, senza seguire i link simbolici
+    private static Map<String, BasicFileAttributes> list(Path dir)
+        throws IOException{
+
+        Map<String, BasicFileAttributes> map = new HashMap<>();
+        try(DirectoryStream<Path> ds = Files.newDirectoryStream(dir)){
+            for(Path p:ds){
+                map.put(p.getFileName().toString(),
+                        Files.readAttributes(p, BasicFileAttributes.class,
+                                             LinkOption.NOFOLLOW_LINKS));
+            }
+        }
+        return map;
+    }
+
+    //true se il file destinazione e' gia' aggiornato
+    private boolean unchanged(Path in, BasicFileAttributes inAttrs,
+                              Path out, BasicFileAttributes outAttrs)
+        throws IOException{
+
+        if(!outAttrs.isRegularFile() || inAttrs.size() != outAttrs.size()){
+            return false;
+        }
+        switch(mode){
+            case SIZE_AND_TIME:
+                return inAttrs.lastModifiedTime().toMillis() ==
+                       outAttrs.lastModifiedTime().toMillis();
+            case CONTENT:
+                return sameContent(in, out);
+            default:
+                return false;
+        }
+    }
+
+    //Confronto byte a byte, interrotto alla prima differenza
+    private static boolean sameContent(Path a, Path b)
+        throws IOException{
+
+        try(FileChannel ca = FileChannel.open(a);
+            FileChannel cb = FileChannel.open(b)){
+
+            ByteBuffer ba = ByteBuffer.allocate(COMPAREBUFFERSIZE);
+            ByteBuffer bb = ByteBuffer.allocate(COMPAREBUFFERSIZE);
+            while(true){
+                ba.clear();
+                bb.clear();
+                int na = fill(ca, ba);
+                int nb = fill(cb, bb);
+                if(na != nb){
+                    return false;
+                }
+                if(na == 0){
+                    return true;
+                }
+                ba.flip();
+                bb.flip();
+                if(!ba.equals(bb)){
+                    return false;
+                }
+            }
+        }
+    }
+
+    private static int fill(FileChannel channel, ByteBuffer buf)
+        throws IOException{
+
+        while(buf.hasRemaining() && channel.read(buf) != -1){
+            //continua a leggere fino a riempire il buffer
+        }
+        return buf.position();
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    //Copia di una directory: crea la destinazione e genera i sottotask
+    private final class DirTask
+        extends RecursiveAction{
+
+        private static final long serialVersionUID = 1L;
+
+        private final File in;
+
+        private final File out;
+
+        //La destinazione letta dalla directory padre, null se assente o non letta
+        private final BasicFileAttributes target;
+
+        DirTask(File in, File out, BasicFileAttributes target){
+            this.in = in;
+            this.out = out;
+            this.target = target;
+        }
+
+        @Override
+        protected void compute(){
+            try{
+                if(target != null && !target.isDirectory() &&
+                   !target.isSymbolicLink()){
+                    //Un file al posto della directory: viene sostituito
+                    Files.delete(out.toPath());
+                    deleted.increment();
+                }
+                else if(out.isFile()){
+                    throw new IOException("La destinazione non e' una directory: " +
+                                          out.getPath());
+                }
+                if(!out.exists() && !out.mkdirs()){
+                    throw new IOException("Impossibile creare " +
+                                          "la directory destinazione " +
+                                          out.getPath());
+                }
+
+                Map<String, BasicFileAttributes> existing;
+                if(mode != SyncMode.ALWAYS || deleteExtraneous){
+                    existing = list(out.toPath());
+                }
+                else{
+                    existing = Collections.emptyMap();
+                }
+
+                List<RecursiveAction> tasks = new ArrayList<>();
+                List<Entry> batch = new ArrayList<>();
+                long batchBytes = 0;
+                try(DirectoryStream<Path> ds = Files.newDirectoryStream(in.toPath())){
+                    for(Path p:ds){
+                        BasicFileAttributes attrs =
+                            Files.readAttributes(p, BasicFileAttributes.class);
+                        String name = p.getFileName().toString();
+                        BasicFileAttributes target = existing.remove(name);
+                        File outFile = new File(out.getPath() + "/" + name);
+                        if(attrs.isDirectory()){
+                            if(recursive){
+                                tasks.add(new DirTask(p.toFile(), outFile, target));
+                            }
+                        }
+                        else{
+                            if(filter == null || filter.accept(outFile)){
+                                Entry entry = new Entry(p.toFile(), outFile,
+                                                        attrs, target);
+                                if(attrs.size() >= BATCHBYTES){
+                                    tasks.add(new FileTask(
+                                        Collections.singletonList(entry)));
+                                }
+                                else{
+                                    batch.add(entry);
+                                    batchBytes += attrs.size();
+                                    if(batchBytes >= BATCHBYTES ||
+                                       batch.size() >= BATCHFILES){
+                                        tasks.add(new FileTask(batch));
+                                        batch = new ArrayList<>();
+                                        batchBytes = 0;
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+                if(!batch.isEmpty()){
+                    tasks.add(new FileTask(batch));
+                }
+
+                //Quanto resta non esiste piu' nella sorgente
+                if(deleteExtraneous){
+                    for(Map.Entry<String, BasicFileAttributes> e:existing.entrySet()){
+                        File extra = new File(out.getPath() + "/" + e.getKey());
+                        if(e.getValue().isDirectory()){
+                            if(recursive){
+                                deleted.add(erase(extra.toPath()));
+                            }
+                        }
+                        else{
+                            Files.delete(extra.toPath());
+                            deleted.increment();
+                        }
+                    }
+                }
+
+                invokeAll(tasks);
+            }
+            catch(IOException e){
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    //Un file da copiare
+    private static final class Entry{
+
+        private final File in;
+
+        private final File out;
+
+        private final BasicFileAttributes attrs;
+
+        //La destinazione letta dalla directory, null se assente o non letta
+        private final BasicFileAttributes target;
+
+        Entry(File in, File out, BasicFileAttributes attrs,
+              BasicFileAttributes target){
+            this.in = in;
+            this.out = out;
+            this.attrs = attrs;
+            this.target = target;
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    //Confronto e copia di un file grande o di un gruppo di file piccoli
+    private final class FileTask
+        extends RecursiveAction{
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Entry> entries;
+
+        FileTask(List<Entry> entries){
+            this.entries = entries;
+        }
+
+        @Override
+        protected void compute(){
+            try{
+                for(Entry e:entries){
+                    if(e.target != null){
+                        if(e.target.isDirectory()){
+                            //Una directory al posto del file: viene sostituita
+                            deleted.add(erase(e.out.toPath()));
+                        }
+                        else if(unchanged(e.in.toPath(), e.attrs,
+                                          e.out.toPath(), e.target)){
+                            skipped.increment();
+                            continue;
+                        }
+                    }
+                    bytes.add(FileSystem.copyFile(e.in, e.out, bufferSize));
+                    files.increment();
+                    if(mode != SyncMode.ALWAYS){
+                        //Necessario perche' al prossimo giro il file
+                        //risulti invariato
+                        Files.setLastModifiedTime(e.out.toPath(),
+                                                  e.attrs.lastModifiedTime());
+                    }
+                }
+            }
+            catch(IOException e){
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
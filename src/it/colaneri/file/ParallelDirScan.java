@@ -0,0 +1,198 @@
+package it.colaneri.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+///////////////////////////////////////////////////////////////////////////
+/** Visita parallela di un albero di directory su un {@link ForkJoinPool}
+ * dedicato: ogni directory e' un task che legge i propri elementi con
+ * un solo stat ciascuno e restituisce un riepilogo parziale, poi fuso
+ * con quelli delle subdirectory. I link simbolici a file sono contati
+ * con la dimensione del file puntato, come in
+ * {@link FileSystem#directorySize(File, boolean)}; i link simbolici a
+ * directory non vengono percorsi.
+ */
+final class ParallelDirScan{
+
+    private final boolean recursive;
+
+    private final int largest;
+
+    ///////////////////////////////////////////////////////////////////////
+    ParallelDirScan(boolean recursive, int largest){
+        this.recursive = recursive;
+        this.largest = Math.max(largest, 0);
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Esegue la visita
+     * @param dir La directory di partenza, gia' verificata
+     * @param parallelism Il numero massimo di thread;
+     * se minore o uguale a 0 viene usato il numero di processori
+     * @return Il riepilogo della directory
+     */
+    DirectorySummary run(File dir, int parallelism){
+        if(parallelism <= 0){
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+
+        Partial total;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try{
+            total = pool.invoke(new DirTask(dir.toPath(), true));
+        }
+        finally{
+            pool.shutdown();
+        }
+
+        List<Entry> top = new ArrayList<>(total.top);
+        top.sort((a, b) -> Long.compare(b.size, a.size));
+        Map<File, Long> largestFiles = new LinkedHashMap<>();
+        for(Entry e:top){
+            largestFiles.put(e.path.toFile(), e.size);
+        }
+        return new DirectorySummary(total.bytes, total.files, total.dirs,
+                                    largestFiles, total.extensions);
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    //Riepilogo parziale di un sottoalbero
+    private final class Partial{
+
+        private long bytes;
+
+        private long files;
+
+        private long dirs;
+
+        //I file piu' grandi, con il piu' piccolo in testa
+        private final PriorityQueue<Entry> top =
+            new PriorityQueue<>((a, b) -> Long.compare(a.size, b.size));
+
+        private final Map<String, Long> extensions = new HashMap<>();
+
+        void addFile(Path path, long size){
+            bytes += size;
+            files++;
+            extensions.merge(FileUtils.getExtension(path.getFileName().toString()),
+                             size, Long::sum);
+            offer(new Entry(path, size));
+        }
+
+        void merge(Partial other){
+            bytes += other.bytes;
+            files += other.files;
+            dirs += other.dirs;
+            for(Map.Entry<String, Long> e:other.extensions.entrySet()){
+                extensions.merge(e.getKey(), e.getValue(), Long::sum);
+            }
+            for(Entry e:other.top){
+                offer(e);
+            }
+        }
+
+        private void offer(Entry e){
+            if(largest == 0){
+                return;
+            }
+            if(top.size() < largest){
+                top.add(e);
+            }
+            else if(top.peek().size < e.size){
+                top.poll();
+                top.add(e);
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    //Un file con la sua dimensione
+    private static final class Entry{
+
+        private final Path path;
+
+        private final long size;
+
+        Entry(Path path, long size){
+            this.path = path;
+            this.size = size;
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    //Visita di una directory
+    private final class DirTask
+        extends RecursiveTask<Partial>{
+
+        private static final long serialVersionUID = 1L;
+
+        private final Path dir;
+
+        private final boolean root;
+
+        DirTask(Path dir, boolean root){
+            this.dir = dir;
+            this.root = root;
+        }
+
+        @Override
+        protected Partial compute(){
+            Partial partial = new Partial();
+            List<DirTask> tasks = new ArrayList<>();
+
+            try(DirectoryStream<Path> ds = Files.newDirectoryStream(dir)){
+                for(Path p:ds){
+                    BasicFileAttributes attrs;
+                    try{
+                        attrs = Files.readAttributes(p, BasicFileAttributes.class,
+                                                     LinkOption.NOFOLLOW_LINKS);
+                        if(attrs.isSymbolicLink()){
+                            attrs = Files.readAttributes(p, BasicFileAttributes.class);
+                            if(attrs.isDirectory()){
+                                continue;
+                            }
+                        }
+                    }
+                    catch(IOException e){
+                        continue; //cancellato o link interrotto
+                    }
+
+                    if(attrs.isDirectory()){
+                        partial.dirs++;
+                        if(recursive){
+                            tasks.add(new DirTask(p, false));
+                        }
+                    }
+                    else if(attrs.isRegularFile()){
+                        partial.addFile(p, attrs.size());
+                    }
+                }
+            }
+            catch(IOException e){
+                if(root){
+                    throw new IllegalArgumentException(
+                        "Impossibile leggere la directory " + dir, e);
+                }
+                return partial; //subdirectory non leggibile
+            }
+
+            for(DirTask task:invokeAll(tasks)){
+                partial.merge(task.join());
+            }
+            return partial;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package it.colaneri.file;
+
+///////////////////////////////////////////////////////////////////////////
+/** Criterio con cui {@link FileSystem#syncDir(java.io.File, java.io.File,
+ * boolean, java.io.FileFilter, SyncMode, boolean, int)} stabilisce se un
+ * file gia' presente nella destinazione deve essere copiato di nuovo.
+ */
+public enum SyncMode{
+    /** Il file viene sempre copiato, come in
+     * {@link FileSystem#copyDir(java.io.File, java.io.File, boolean)} */
+    ALWAYS,
+    /** Il file viene saltato se dimensione e data di ultima modifica
+     * (al millisecondo) coincidono con quelle della sorgente */
+    SIZE_AND_TIME,
+    /** Il file viene saltato se ha la stessa dimensione e lo stesso
+     * contenuto della sorgente */
+    CONTENT
+}
@@ -3,7 +3,11 @@
 package it.colaneri.file;
 
 import java.io.*;
+import java.nio.charset.Charset;
 import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.stream.Stream;
 
 public class TextFile extends ArrayList<String> {
 	
@@ -33,6 +37,59 @@ public class TextFile extends ArrayList<String> {
 		return sb.toString();
 	}
 
+	/**
+	 * Legge il file specificato riga per riga, senza caricarlo in memoria:
+	 * le righe sono prodotte solo quando lo stream viene consumato
+	 * (anche tramite {@link Stream#iterator()}). Il charset usato e'
+	 * {@link Defaults#TEXT_FILE_ENCODING}, e come in {@link #read(String)} i byte
+	 * non validi sono sostituiti invece di sollevare un errore; lo stream va chiuso.
+	 * Per l'accesso casuale per indice ai file grandi vedi {@link MappedTextFile}
+	 * @param fileName il file da leggere
+	 * @return uno stream con le righe del file
+	 */
+	public static Stream<String> lines(String fileName) {
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(
+					new FileInputStream(new File(fileName).getAbsoluteFile()),
+					Charset.forName(Defaults.TEXT_FILE_ENCODING)));
+			return in.lines().onClose(() -> {
+				try {
+					in.close();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Elabora in parallelo le righe del file specificato. Il file viene
+	 * diviso in intervalli di byte allineati all'inizio delle righe; ogni
+	 * intervallo e' decodificato con {@link Defaults#TEXT_FILE_ENCODING} da
+	 * un thread che accumula le proprie righe partendo da identity, e i
+	 * risultati parziali sono combinati nell'ordine del file.
+	 * Le righe sono separate da "\n" ("\r\n" e "\r" come in {@link #read(String)}).
+	 * @param fileName il file da leggere
+	 * @param parallelism il numero di thread; se minore o uguale a 0
+	 * viene usato il numero di processori
+	 * @param identity il valore iniziale di ogni intervallo, che deve essere
+	 * neutro per combiner
+	 * @param accumulator aggiunge una riga ad un risultato parziale
+	 * @param combiner combina due risultati parziali consecutivi
+	 * @return il risultato complessivo
+	 */
+	public static <R> R processParallel(String fileName, int parallelism, R identity,
+			BiFunction<R, ? super String, R> accumulator,
+			BinaryOperator<R> combiner) {
+		try {
+			return TextFileChunks.reduce(fileName, parallelism, identity, accumulator, combiner);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	/**
 	 * Scrive un file con una sola istruzione
 	 * @param fileName il nome del file
@@ -51,6 +108,73 @@ public class TextFile extends ArrayList<String> {
 		}
 	}
 
+	/**
+	 * Scrive un file con una sola istruzione. In modalita' atomica il testo
+	 * viene scritto in un file temporaneo poi rinominato sul file, cosi' che
+	 * chi lo legge non ne veda mai un contenuto parziale; vedi
+	 * {@link AtomicFileOutputStream}
+	 * @param fileName il nome del file
+	 * @param text il testo del file
+	 * @param atomic se si vuole sostituire il file solo a scrittura completata
+	 */
+	public static void write(String fileName, String text, boolean atomic) {
+		if (!atomic) {
+			write(fileName, text);
+			return;
+		}
+		try {
+			AtomicFileOutputStream os = new AtomicFileOutputStream(new File(fileName));
+			try {
+				PrintWriter out = new PrintWriter(new OutputStreamWriter(os));
+				out.print(text);
+				publish(out, os, fileName);
+			} finally {
+				os.abort();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	// PrintWriter non solleva eccezioni: gli errori vanno verificati prima
+	// di pubblicare il file
+	private static void publish(PrintWriter out, AtomicFileOutputStream os, String fileName) throws IOException {
+		if (out.checkError())
+			throw new IOException("Errore nella scrittura del file " + fileName);
+		os.close();
+	}
+
+	/**
+	 * Apre un file per scriverne le righe man mano, senza costruirne prima
+	 * l'intero contenuto in memoria; vedi {@link TextFileWriter}
+	 * @param fileName il nome del file
+	 * @param append se true le righe sono accodate al contenuto esistente
+	 * @return il writer, da chiudere al termine
+	 */
+	public static TextFileWriter writer(String fileName, boolean append) {
+		try {
+			return new TextFileWriter(fileName, append);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Apre un file per scriverne le righe man mano; in modalita' atomica
+	 * il file viene sostituito solo alla chiusura del writer
+	 * @param fileName il nome del file
+	 * @param append se true le righe sono accodate al contenuto esistente
+	 * @param atomic se true il file viene sostituito solo alla chiusura
+	 * @return il writer, da chiudere al termine
+	 */
+	public static TextFileWriter writer(String fileName, boolean append, boolean atomic) {
+		try {
+			return new TextFileWriter(fileName, append, TextFileWriter.DEFAULT_BUFFER_SIZE, atomic);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	/**
 	 * Legge un file tramutandolo in una rappresentazione a "righe" divise dallo "splitter" specificato
 	 * @param fileName il nome del file
@@ -90,6 +214,33 @@ public class TextFile extends ArrayList<String> {
 		}
 	}
 
+	/**
+	 * Persiste il file rappresentato da questa istanza. In modalita' atomica
+	 * il file viene sostituito solo a scrittura completata, come in
+	 * {@link #write(String, String, boolean)}
+	 * @param fileName il nome del file
+	 * @param atomic se si vuole sostituire il file solo a scrittura completata
+	 */
+	public void write(String fileName, boolean atomic) {
+		if (!atomic) {
+			write(fileName);
+			return;
+		}
+		try {
+			AtomicFileOutputStream os = new AtomicFileOutputStream(new File(fileName));
+			try {
+				PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(os)));
+				for (String item : this)
+					out.println(item);
+				publish(out, os, fileName);
+			} finally {
+				os.abort();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	//Test
 	public static void main(String[] args) {
 		String file = read("utils.iml");
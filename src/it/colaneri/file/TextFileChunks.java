@@ -0,0 +1,183 @@
+package it.colaneri.file;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+
+/**
+ * Elaborazione parallela delle righe di un file di testo, usata da
+ * {@link TextFile#processParallel(String, int, Object, BiFunction, BinaryOperator)}.
+ * Il file viene diviso in intervalli di byte i cui estremi cadono
+ * subito dopo un "\n", cosi' che nessuna riga sia spezzata; ogni
+ * intervallo viene letto e decodificato da un thread con letture
+ * posizionali sullo stesso {@link FileChannel}.
+ */
+final class TextFileChunks {
+
+	/** Dimensione minima di un intervallo */
+	private static final long MIN_CHUNK_SIZE = 1 << 20;
+
+	/** Intervalli per thread, per bilanciare righe di costo diverso */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private static final Charset CHARSET = Charset.forName(Defaults.TEXT_FILE_ENCODING);
+
+	private TextFileChunks() {
+	}
+
+	static <R> R reduce(String fileName, int parallelism, R identity,
+			BiFunction<R, ? super String, R> accumulator, BinaryOperator<R> combiner) throws IOException {
+		if (parallelism <= 0)
+			parallelism = Runtime.getRuntime().availableProcessors();
+
+		try (FileChannel channel = FileChannel.open(new File(fileName).getAbsoluteFile().toPath(),
+				StandardOpenOption.READ)) {
+			long[] bounds = split(channel, parallelism * CHUNKS_PER_THREAD);
+
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				List<Future<R>> results = new ArrayList<>(bounds.length - 1);
+				for (int i = 0; i < bounds.length - 1; i++) {
+					long start = bounds[i];
+					long end = bounds[i + 1];
+					results.add(pool.submit(() -> process(channel, start, end, identity, accumulator)));
+				}
+				// I risultati sono combinati nell'ordine del file
+				R result = identity;
+				for (Future<R> f : results)
+					result = combiner.apply(result, f.get());
+				return result;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Elaborazione interrotta", e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof UncheckedIOException)
+					throw ((UncheckedIOException) cause).getCause();
+				if (cause instanceof RuntimeException)
+					throw (RuntimeException) cause;
+				if (cause instanceof Error)
+					throw (Error) cause;
+				throw new IOException(cause);
+			} finally {
+				pool.shutdownNow();
+			}
+		}
+	}
+
+	/**
+	 * Divide il file in intervalli allineati all'inizio delle righe
+	 * @param channel il file
+	 * @param chunks il numero di intervalli desiderato
+	 * @return gli estremi degli intervalli, dal primo byte alla fine del file
+	 */
+	static long[] split(FileChannel channel, int chunks) throws IOException {
+		long size = channel.size();
+		chunks = (int) Math.max(1, Math.min(chunks, size / MIN_CHUNK_SIZE));
+		long step = size / chunks;
+
+		List<Long> bounds = new ArrayList<>(chunks + 1);
+		bounds.add(0L);
+		ByteBuffer buf = ByteBuffer.allocate(8 * 1024);
+		for (int i = 1; i < chunks; i++) {
+			long from = Math.max(i * step, bounds.get(bounds.size() - 1)) - 1;
+			long bound = nextLine(channel, from, buf);
+			if (bound >= size)
+				break;
+			if (bound > bounds.get(bounds.size() - 1))
+				bounds.add(bound);
+		}
+		bounds.add(size);
+
+		long[] result = new long[bounds.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = bounds.get(i);
+		return result;
+	}
+
+	// Posizione successiva al primo "\n" a partire da from
+	private static long nextLine(FileChannel channel, long from, ByteBuffer buf) throws IOException {
+		long position = from;
+		while (true) {
+			buf.clear();
+			int n = channel.read(buf, position);
+			if (n <= 0)
+				return channel.size();
+			for (int i = 0; i < n; i++) {
+				if (buf.get(i) == '\n')
+					return position + i + 1;
+			}
+			position += n;
+		}
+	}
+
+	private static <R> R process(FileChannel channel, long start, long end, R identity,
+			BiFunction<R, ? super String, R> accumulator) {
+		R result = identity;
+		try (BufferedReader in = new BufferedReader(
+				new InputStreamReader(new RangeInputStream(channel, start, end), CHARSET))) {
+			String line;
+			while ((line = in.readLine()) != null)
+				result = accumulator.apply(result, line);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return result;
+	}
+
+	/**
+	 * Lettura di un intervallo del file tramite letture posizionali,
+	 * che possono essere eseguite in parallelo sullo stesso canale
+	 */
+	private static final class RangeInputStream extends InputStream {
+
+		private final FileChannel channel;
+
+		private final long end;
+
+		private long position;
+
+		RangeInputStream(FileChannel channel, long start, long end) {
+			this.channel = channel;
+			this.position = start;
+			this.end = end;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (position >= end)
+				return -1;
+			len = (int) Math.min(len, end - position);
+			int n = channel.read(ByteBuffer.wrap(b, off, len), position);
+			if (n <= 0)
+				return -1;
+			position += n;
+			return n;
+		}
+
+		@Override
+		public void close() {
+			// il canale e' condiviso e viene chiuso dal chiamante
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package it.colaneri.file;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Scrittura veloce di un file di testo riga per riga. Le righe sono
+ * codificate con {@link Defaults#TEXT_FILE_ENCODING} direttamente in un
+ * {@link ByteBuffer} diretto di grandi dimensioni, svuotato sul file solo
+ * quando e' pieno: non serve costruire in memoria l'intero contenuto
+ * come con {@link TextFile#write(String, String)}.
+ * Le righe sono terminate da "\n" e i caratteri non codificabili sono
+ * sostituiti. Il writer va chiuso con {@link #close()}.
+ * In modalita' atomica le righe sono scritte in un file temporaneo che
+ * alla chiusura sostituisce il file, come in {@link AtomicFileOutputStream}.
+ */
+public class TextFileWriter implements Closeable, Flushable {
+
+	/** Dimensione predefinita del buffer */
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+	private static final Charset CHARSET = Charset.forName(Defaults.TEXT_FILE_ENCODING);
+
+	private final FileChannel channel;
+
+	// Destinazione e file temporaneo in modalita' atomica, altrimenti null
+	private final Path target;
+
+	private final Path temp;
+
+	private final ByteBuffer buffer;
+
+	private final CharsetEncoder encoder;
+
+	private final byte[] newLine;
+
+	/**
+	 * Apre il file in scrittura, troncandolo se esiste
+	 * @param fileName il nome del file
+	 * @throws IOException in caso di errore
+	 */
+	public TextFileWriter(String fileName) throws IOException {
+		this(fileName, false);
+	}
+
+	/**
+	 * Apre il file in scrittura
+	 * @param fileName il nome del file
+	 * @param append se true le righe sono accodate al contenuto esistente
+	 * @throws IOException in caso di errore
+	 */
+	public TextFileWriter(String fileName, boolean append) throws IOException {
+		this(fileName, append, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Apre il file in scrittura
+	 * @param fileName il nome del file
+	 * @param append se true le righe sono accodate al contenuto esistente
+	 * @param bufferSize la dimensione del buffer in byte
+	 * @throws IOException in caso di errore
+	 */
+	public TextFileWriter(String fileName, boolean append, int bufferSize) throws IOException {
+		this(fileName, append, bufferSize, false);
+	}
+
+	/**
+	 * Apre il file in scrittura
+	 * @param fileName il nome del file
+	 * @param append se true le righe sono accodate al contenuto esistente
+	 * @param bufferSize la dimensione del buffer in byte
+	 * @param atomic se true il file viene sostituito solo alla chiusura
+	 * @throws IOException in caso di errore
+	 */
+	public TextFileWriter(String fileName, boolean append, int bufferSize, boolean atomic) throws IOException {
+		if (bufferSize < 16)
+			throw new IllegalArgumentException("Dimensione del buffer non valida: " + bufferSize);
+		Path path = new File(fileName).getAbsoluteFile().toPath();
+		if (atomic) {
+			target = path;
+			temp = AtomicFileOutputStream.prepare(path, append);
+			path = temp;
+		} else {
+			target = null;
+			temp = null;
+		}
+		try {
+			channel = FileChannel.open(path,
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+		} catch (IOException e) {
+			if (temp != null)
+				Files.deleteIfExists(temp);
+			throw e;
+		}
+		buffer = ByteBuffer.allocateDirect(bufferSize);
+		encoder = CHARSET.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		newLine = "\n".getBytes(CHARSET);
+	}
+
+	/**
+	 * Scrive il testo senza aggiungere il terminatore di riga
+	 * @param text il testo da scrivere
+	 * @throws IOException in caso di errore
+	 */
+	public void write(CharSequence text) throws IOException {
+		CharBuffer in = CharBuffer.wrap(text);
+		while (encoder.encode(in, buffer, true).isOverflow())
+			drain();
+		// dopo flush non si puo' piu' chiamare encode fino al reset
+		while (encoder.flush(buffer).isOverflow())
+			drain();
+		encoder.reset();
+	}
+
+	/**
+	 * Scrive una riga seguita da "\n"
+	 * @param line la riga da scrivere
+	 * @throws IOException in caso di errore
+	 */
+	public void writeLine(CharSequence line) throws IOException {
+		write(line);
+		if (buffer.remaining() < newLine.length)
+			drain();
+		buffer.put(newLine);
+	}
+
+	/**
+	 * Scrive un gruppo di righe, ognuna seguita da "\n". Le righe sono
+	 * consumate una alla volta, quindi possono essere prodotte man mano
+	 * @param lines le righe da scrivere
+	 * @throws IOException in caso di errore
+	 */
+	public void writeLines(Iterable<? extends CharSequence> lines) throws IOException {
+		for (CharSequence line : lines)
+			writeLine(line);
+	}
+
+	/**
+	 * Scrive sul file il contenuto del buffer
+	 * @throws IOException in caso di errore
+	 */
+	@Override
+	public void flush() throws IOException {
+		drain();
+	}
+
+	/**
+	 * Scrive sul file il contenuto del buffer e attende che i dati siano
+	 * stati trasferiti sul disco
+	 * @throws IOException in caso di errore
+	 */
+	public void force() throws IOException {
+		drain();
+		channel.force(false);
+	}
+
+	/**
+	 * Scrive il contenuto del buffer e chiude il file. In modalita' atomica
+	 * il file temporaneo viene sincronizzato sul disco e rinominato sul file
+	 * @throws IOException in caso di errore; in modalita' atomica il file
+	 * resta invariato
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!channel.isOpen())
+			return;
+		if (temp == null) {
+			try {
+				drain();
+			} finally {
+				channel.close();
+			}
+			return;
+		}
+		try {
+			drain();
+			channel.force(true);
+		} catch (IOException e) {
+			abort();
+			throw e;
+		}
+		channel.close();
+		AtomicFileOutputStream.publish(temp, target);
+	}
+
+	/**
+	 * Chiude il file scartando il contenuto del buffer; in modalita' atomica
+	 * scarta anche il file temporaneo, lasciando il file invariato.
+	 * Non ha effetto se il writer e' gia' stato chiuso
+	 */
+	public void abort() {
+		if (!channel.isOpen())
+			return;
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// il file temporaneo viene comunque cancellato
+		}
+		if (temp != null) {
+			try {
+				Files.deleteIfExists(temp);
+			} catch (IOException e) {
+				// file temporaneo non cancellabile: va rimosso prima di riscrivere il file
+			}
+		}
+	}
+
+	private void drain() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+}
@@ -70,8 +70,8 @@ public class FileNameComparator
         int value = 0;
 
         try{
-            int sequence1 = this.getNumSequence(file1);
-            int sequence2 = this.getNumSequence(file2);
+            long sequence1 = this.getSequence(file1);
+            long sequence2 = this.getSequence(file2);
             if(!decreasingMode){
                 if(sequence1 > sequence2){
                     value = 1;
@@ -96,18 +96,57 @@ public class FileNameComparator
         return value;
     }
 
+    ////////////////////////////////////////////////////////////////////////////
+    /** Ordina i file per numero di sequenza, come {@link java.util.Arrays#sort(Object[],
+     * java.util.Comparator)} con questo comparatore ma estraendo il numero di
+     * sequenza di ogni file una sola volta; l'ordinamento avviene su chiavi
+     * primitive, in parallelo se i file sono molti. Rispetta l'ordinamento
+     * decrescente; i file con lo stesso numero di sequenza restano nell'ordine
+     * di partenza.
+     *
+     * @param files i file da ordinare
+     * @return un nuovo array con i file ordinati
+     * @throws IllegalArgumentException se i file non rispettano le regole di
+     * naming previste
+     */
+    public File[] sort(File[] files){
+        long[] keys = SortKeys.keys(files, this::getSequence);
+        return SortKeys.sort(files, keys, decreasingMode);
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     /** Dato un file ritorna il numero di sequenza contenuto nel naming
      *
      * @param file il file dal cui nome si vuole estrarre il numero di sequenza
      * @return il numero di sequenza
-     * @throws IOException se � impossibile estrarre la sequenza
+     * @throws IOException se e' impossibile estrarre la sequenza o se non
+     * e' rappresentabile come int (vedi {@link #getSequence(File)})
      */
     public int getNumSequence(File file)
         throws IOException{
 
+        long num = getSequence(file);
+        if(num != (int)num){
+            throw new IOException(
+                "Impossibile estrarre il numero di sequenza dal file " +
+                file.getPath());
+        }
+        return (int)num;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /** Dato un file ritorna il numero di sequenza contenuto nel naming,
+     * anche se eccede il valore massimo di un int
+     *
+     * @param file il file dal cui nome si vuole estrarre il numero di sequenza
+     * @return il numero di sequenza
+     * @throws IOException se e' impossibile estrarre la sequenza
+     */
+    public long getSequence(File file)
+        throws IOException{
+
         String numSequence;
-        int num;
+        long num;
 
         String name = file.getName();
 
@@ -127,7 +166,7 @@ public class FileNameComparator
                                              index + sequenceShift + 1);
             }
 
-            num = Integer.parseInt(numSequence);
+            num = Long.parseLong(numSequence);
         }
         catch(Exception e){
             throw new IOException(
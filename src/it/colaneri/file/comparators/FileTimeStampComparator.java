@@ -1,14 +1,18 @@
 package it.colaneri.file.comparators;
 
+import it.colaneri.time.Timestamp;
+
 import java.io.File;
 import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Comparator;
-import java.util.Date;
 
 /**
- * Permette di ordinare o confrontare i timestamp dei file
+ * Permette di ordinare o confrontare i timestamp dei file.
+ * Il comparatore puo' essere usato da piu' thread, ad esempio con
+ * {@link java.util.Arrays#parallelSort(Object[], Comparator)}; per ordinare
+ * molti file conviene comunque {@link #sort(File[])}.
  */
 public class FileTimeStampComparator
     implements Comparator<File>{
@@ -17,8 +21,6 @@ public class FileTimeStampComparator
 
     private final int timestampShift;
 
-    private final SimpleDateFormat sdf;
-
     private boolean oldestFirst = true;
 
     ////////////////////////////////////////////////////////////////////////////
@@ -42,7 +44,8 @@ public class FileTimeStampComparator
         this.timestampFormat = timestampFormat;
         this.timestampShift = timestampShift;
     
-        sdf = new SimpleDateFormat(timestampFormat);
+        //verifica il formato
+        new SimpleDateFormat(timestampFormat);
     }
 
     ////////////////////////////////////////////////////////////////////////////
@@ -68,23 +71,15 @@ public class FileTimeStampComparator
     public int compare(File file1, File file2){
         int result;
 
-        Date date1, date2;
+        long date1, date2;
         String value1, value2;
         try{
             value1 = getTimestamp(file1);
             value2 = getTimestamp(file2);
-            date1 = sdf.parse(value1);
-            date2 = sdf.parse(value2);
+            date1 = Timestamp.parse(timestampFormat, value1);
+            date2 = Timestamp.parse(timestampFormat, value2);
 
-            if(date1.before(date2)){
-                result = -1;
-            }
-            else if(date1.after(date2)){
-                result = 1;
-            }
-            else{
-                result = 0;
-            }
+            result = Long.compare(date1, date2);
         }
         catch(IOException e){
             throw new IllegalArgumentException("Errore critico: " + e.getMessage());
@@ -101,6 +96,42 @@ public class FileTimeStampComparator
         }
     }
 
+    ////////////////////////////////////////////////////////////////////////////
+    /** Ordina i file per timestamp, come {@link java.util.Arrays#sort(Object[],
+     * java.util.Comparator)} con questo comparatore ma estraendo e
+     * interpretando il timestamp di ogni file una sola volta; l'ordinamento
+     * avviene su chiavi primitive, in parallelo se i file sono molti.
+     * I file con lo stesso timestamp restano nell'ordine di partenza.
+     *
+     * @param files i file da ordinare
+     * @return un nuovo array con i file ordinati
+     * @throws IllegalArgumentException se i File non rispettano il naming previsto
+     */
+    public File[] sort(File[] files){
+        long[] keys = SortKeys.keys(files, this::getTime);
+        return SortKeys.sort(files, keys, !oldestFirst);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /** Dato un file ritorna l'istante indicato dal suo timestamp
+     *
+     * @param file il file dal cui nome si vuole estrarre il timestamp
+     * @return l'istante in millisecondi dal 1970
+     * @throws IOException se e' impossibile estrarre o interpretare il timestamp
+     */
+    public long getTime(File file)
+        throws IOException{
+
+        String value = getTimestamp(file);
+        try{
+            return Timestamp.parse(timestampFormat, value);
+        }
+        catch(ParseException e){
+            throw new IOException("Impossibile parsificare il file " +
+                                  file.getPath() + ": " + e.getMessage());
+        }
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     /** Permette di stabilire se due File hanno lo stesso timestamp
      *
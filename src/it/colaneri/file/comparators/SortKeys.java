@@ -0,0 +1,97 @@
+package it.colaneri.file.comparators;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Ordinamento di file per una chiave numerica estratta dal nome, usato dai
+ * comparatori di questo package. Ogni chiave viene estratta una sola volta;
+ * le chiavi sono poi sostituite dalla loro posizione tra i valori distinti
+ * e impacchettate con l'indice del file in un solo long, cosi' che basti
+ * ordinare un array di primitivi con {@link Arrays#parallelSort(long[])}.
+ * A parita' di chiave i file restano nell'ordine di partenza, come con
+ * {@link Arrays#sort(Object[], java.util.Comparator)}.
+ */
+final class SortKeys{
+
+    //Sotto questa soglia le chiavi sono estratte da un solo thread
+    private static final int PARALLEL_THRESHOLD = 8192;
+
+    private SortKeys(){
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //Estrazione della chiave di un file
+    interface KeyExtractor{
+
+        long key(File file)
+            throws IOException;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /** Estrae la chiave di ogni file, in parallelo se i file sono molti
+     *
+     * @param files i file
+     * @param extractor l'estrazione della chiave, che deve poter essere
+     *   eseguita da piu' thread
+     * @return le chiavi, nello stesso ordine dei file
+     * @throws IllegalArgumentException se la chiave di un file non puo'
+     *   essere estratta
+     */
+    static long[] keys(File[] files, KeyExtractor extractor){
+        long[] keys = new long[files.length];
+        IntStream range = IntStream.range(0, files.length);
+        if(files.length >= PARALLEL_THRESHOLD){
+            range = range.parallel();
+        }
+        range.forEach(i -> {
+            try{
+                keys[i] = extractor.key(files[i]);
+            }
+            catch(IOException e){
+                throw new IllegalArgumentException(e.getMessage(), e);
+            }
+        });
+        return keys;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    /** Ordina i file per chiave
+     *
+     * @param files i file
+     * @param keys le chiavi dei file
+     * @param descending se true ordina dalla chiave maggiore alla minore
+     * @return un nuovo array con i file ordinati
+     */
+    static File[] sort(File[] files, long[] keys, boolean descending){
+        int n = files.length;
+
+        long[] distinct = keys.clone();
+        Arrays.parallelSort(distinct);
+        int count = 0;
+        for(int i = 0; i < n; i++){
+            if(count == 0 || distinct[count - 1] != distinct[i]){
+                distinct[count++] = distinct[i];
+            }
+        }
+
+        //Posizione della chiave nei 32 bit alti, indice del file nei bassi
+        long[] packed = new long[n];
+        for(int i = 0; i < n; i++){
+            long rank = Arrays.binarySearch(distinct, 0, count, keys[i]);
+            if(descending){
+                rank = count - 1 - rank;
+            }
+            packed[i] = rank << 32 | i;
+        }
+        Arrays.parallelSort(packed);
+
+        File[] sorted = new File[n];
+        for(int i = 0; i < n; i++){
+            sorted[i] = files[(int)packed[i]];
+        }
+        return sorted;
+    }
+}
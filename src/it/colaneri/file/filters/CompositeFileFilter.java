@@ -0,0 +1,148 @@
+package it.colaneri.file.filters;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Comparator;
+
+///////////////////////////////////////////////////////////////////////////
+/** Combinazione di filtri in and, or e not.
+ * I filtri combinati sono ordinati per {@link FileAttributesFilter#cost()}
+ * (a parita' di costo resta l'ordine indicato) e la valutazione si ferma
+ * al primo filtro che decide il risultato: in un and il caso comune di
+ * rifiuto costa il solo controllo sul nome, senza regex ne' lettura degli
+ * attributi. I filtri devono quindi essere privi di effetti collaterali.
+ * Usato come {@link FileFilter}, gli attributi del file vengono letti una
+ * sola volta e solo se si arriva a un filtro che ne ha bisogno.
+ * Per combinare un filtro esterno al package usare
+ * {@link FileAttributesFilter#of(FileFilter)}.
+ */
+public final class CompositeFileFilter
+    implements FileFilter, FileAttributesFilter{
+
+    private final FileAttributesFilter[] filters;
+
+    //Indice del primo filtro che usa gli attributi
+    private final int firstWithAttributes;
+
+    //true: basta un filtro che accetta (or); false: devono accettare tutti (and)
+    private final boolean any;
+
+    private final boolean negate;
+
+    private final Cost cost;
+
+    private CompositeFileFilter(FileAttributesFilter[] filters, boolean any,
+                                boolean negate){
+        this.filters = filters.clone();
+        for(FileAttributesFilter filter:this.filters){
+            if(filter == null){
+                throw new IllegalArgumentException("Filtro null");
+            }
+        }
+        Arrays.sort(this.filters, Comparator.comparing(FileAttributesFilter::cost));
+        int first = 0;
+        while(first < this.filters.length &&
+              this.filters[first].cost() == Cost.NAME){
+            first++;
+        }
+        this.firstWithAttributes = first;
+        this.any = any;
+        this.negate = negate;
+        this.cost = this.filters.length == 0 ? Cost.NAME :
+                    this.filters[this.filters.length - 1].cost();
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Filtro che accetta i file accettati da tutti i filtri indicati
+     * @param filters I filtri; nessun filtro accetta tutto.
+     * @return Il filtro combinato.
+     */
+    public static CompositeFileFilter and(FileAttributesFilter... filters){
+        return new CompositeFileFilter(filters, false, false);
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Filtro che accetta i file accettati da almeno uno dei filtri indicati
+     * @param filters I filtri; nessun filtro rifiuta tutto.
+     * @return Il filtro combinato.
+     */
+    public static CompositeFileFilter or(FileAttributesFilter... filters){
+        return new CompositeFileFilter(filters, true, false);
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Filtro che accetta i file rifiutati dal filtro indicato
+     * @param filter Il filtro da negare.
+     * @return Il filtro negato.
+     */
+    public static CompositeFileFilter not(FileAttributesFilter filter){
+        return new CompositeFileFilter(new FileAttributesFilter[]{filter},
+                                       false, true);
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Metodo di accettazione dei file. Se gli attributi servono ma non
+     * possono essere letti (ad esempio perche' il file non esiste) il file
+     * viene rifiutato.
+     * @param file Il file o la directory da accettare o filtrare.
+     * @return <CODE>true</CODE> se il file e' accettato;
+     * <CODE>false</CODE> se e' rifiutato.
+     */
+    @Override
+    public boolean accept(File file){
+        try{
+            return accept(file.toPath(), null);
+        }
+        catch(UncheckedIOException e){
+            return false;
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Metodo di accettazione dei file con gli attributi gia' letti
+     * @param path Il file o la directory da accettare o filtrare.
+     * @param attrs Gli attributi del file; se null sono letti solo quando
+     * servono.
+     * @return <CODE>true</CODE> se il file e' accettato;
+     * <CODE>false</CODE> se e' rifiutato.
+     * @throws UncheckedIOException se gli attributi servono ma non
+     * possono essere letti.
+     */
+    @Override
+    public boolean accept(Path path, BasicFileAttributes attrs){
+        boolean result = !any;
+        for(int i = 0; i < filters.length; i++){
+            if(attrs == null && i == firstWithAttributes){
+                attrs = readAttributes(path);
+            }
+            if(filters[i].accept(path, attrs) == any){
+                result = any;
+                break;
+            }
+        }
+        return result != negate;
+    }
+
+    /** Il costo del filtro piu' costoso tra quelli combinati
+     * @return Il costo del filtro.
+     */
+    @Override
+    public Cost cost(){
+        return cost;
+    }
+
+    private static BasicFileAttributes readAttributes(Path path){
+        try{
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        }
+        catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+}
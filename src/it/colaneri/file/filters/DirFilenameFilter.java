@@ -8,13 +8,15 @@ package it.colaneri.file.filters;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 
 /** E' un filtro che permette di fare
  * un list su filesystem con selezione dei soli file.
  * Tutte le directory vengono scartate
  */
 public class DirFilenameFilter
-    implements FilenameFilter{
+    implements FilenameFilter, FileAttributesFilter{
 
     ///////////////////////////////////////////////////////////////////
     /** Costruttore.
@@ -29,4 +31,20 @@ public class DirFilenameFilter
         File localFile = new File(dir.getPath() + "/" + name);
         return !localFile.isDirectory();
     }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public boolean accept(Path path, BasicFileAttributes attrs){
+        return !attrs.isDirectory();
+    }
+
+    /** Il filtro usa gli attributi del file
+     * @return {@link Cost#ATTRIBUTES}
+     */
+    @Override
+    public Cost cost(){
+        return Cost.ATTRIBUTES;
+    }
 }
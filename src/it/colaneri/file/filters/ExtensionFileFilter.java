@@ -8,16 +8,21 @@ package it.colaneri.file.filters;
 
 import java.io.File;
 import java.io.FileFilter;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.StringTokenizer;
 
 /**
  * Questo {@link FileFilter} permette di filtrare
  * i file in base alla loro estensione.
+ * Le estensioni sono compilate alla costruzione in una tabella hash:
+ * il confronto avviene direttamente sulla parte finale del nome,
+ * senza estrarne l'estensione.
  */
 public class ExtensionFileFilter
-    implements FileFilter{
+    implements FileFilter, FileAttributesFilter{
     /**
      * Il separatore usato nell'elenco delle estensioni valide
      */
@@ -32,18 +37,51 @@ public class ExtensionFileFilter
     public static final String NOEXTENSION = "?none?";
 
     /**
-     * Lista di estensioni ammesse, separate da ;
+     * Presenza di ALL tra le estensioni
      */
-    private final List<String> extensions = new ArrayList<>();
+    private final boolean all;
+
+    /**
+     * Presenza di NOEXTENSION tra le estensioni
+     */
+    private final boolean noExtension;
+
+    /**
+     * Tabella hash a indirizzamento aperto delle estensioni ammesse
+     */
+    private final String[] table;
+
+    private final int[] hashes;
+
+    private final int mask;
 
     /** Costruttore.
      * @param extension L'elenco di estensioni (senza punto) valide per il filtro
      */
     public ExtensionFileFilter(String extension){
+        Set<String> extensions = new LinkedHashSet<>();
         StringTokenizer st = new StringTokenizer(extension.trim(), SEPARATOR);
         while(st.hasMoreTokens()){
-            String ext = st.nextToken();
-            this.extensions.add(ext);
+            extensions.add(st.nextToken());
+        }
+        this.all = extensions.contains(ALL);
+        this.noExtension = extensions.contains(NOEXTENSION);
+
+        int size = 2;
+        while(size < extensions.size() * 2){
+            size <<= 1;
+        }
+        this.table = new String[size];
+        this.hashes = new int[size];
+        this.mask = size - 1;
+        for(String ext:extensions){
+            int hash = ext.hashCode();
+            int slot = spread(hash) & mask;
+            while(table[slot] != null){
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = ext;
+            hashes[slot] = hash;
         }
     }
 
@@ -53,28 +91,67 @@ public class ExtensionFileFilter
      */
     @Override
     public boolean accept(File file){
-        if(file.isFile()){
-            String name = file.getName();
+        return file.isFile() && accept(file.getName());
+    }
 
-            //Gestione "tutti"
-            if(extensions.contains(ALL)){
-                return true;
-            }
+    /** Come {@link #accept(File)}, ma usando gli attributi gia' letti
+     * (ad esempio durante la visita di una directory) invece di interrogare
+     * di nuovo il filesystem.
+     * @param path Il file da accettare o rifiutare.
+     * @param attrs Gli attributi del file.
+     * @return File accettato o rifiutato.
+     */
+    @Override
+    public boolean accept(Path path, BasicFileAttributes attrs){
+        return attrs.isRegularFile() && accept(FileAttributesFilter.name(path));
+    }
 
-            //Gestione "nessuna estensione"
-            if(extensions.contains(NOEXTENSION)){
-                if(!name.contains(".")){
-                    return true;
-                }
-            }
+    /** Il filtro usa gli attributi del file
+     * @return {@link Cost#ATTRIBUTES}
+     */
+    @Override
+    public Cost cost(){
+        return Cost.ATTRIBUTES;
+    }
+
+    /** Verifica la sola estensione, senza controllare che si tratti di un file.
+     * Un nome senza punto viene confrontato per intero con le estensioni.
+     * @param name Il nome del file.
+     * @return Nome accettato o rifiutato.
+     */
+    public boolean accept(String name){
+        //Gestione "tutti"
+        if(all){
+            return true;
+        }
+
+        int dot = name.lastIndexOf('.');
+        //Gestione "nessuna estensione"
+        if(noExtension && dot == -1){
+            return true;
+        }
 
-            //Altri casi
-            String filename = file.getName();
-            String fileExtension = filename.substring(filename.lastIndexOf('.') + 1);
-            return extensions.contains(fileExtension);
+        //Altri casi
+        int from = dot + 1;
+        int length = name.length() - from;
+        int hash = 0;
+        for(int i = from; i < name.length(); i++){
+            hash = 31 * hash + name.charAt(i);
         }
-        else{
-            return false;
+        int slot = spread(hash) & mask;
+        String ext;
+        while((ext = table[slot]) != null){
+            if(hashes[slot] == hash && ext.length() == length &&
+               name.regionMatches(from, ext, 0, length)){
+                return true;
+            }
+            slot = (slot + 1) & mask;
         }
+        return false;
+    }
+
+    //Distribuisce i bit alti dell'hash su quelli bassi usati dalla tabella
+    private static int spread(int hash){
+        return hash ^ (hash >>> 16);
     }
 }
@@ -8,20 +8,22 @@ package it.colaneri.file.filters;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 
 /** Utile a filtrare il contenuto di una directory
  * in base all'estensione.
  */
 public class ExtensionFilenameFilter
-    implements FilenameFilter{
+    implements FilenameFilter, FileAttributesFilter{
 
-    private String pattern;
+    private final String suffix;
 
     /** Costruisce un nuovo filtro.
      * @param extension L'estensione da filtrare
      */
     public ExtensionFilenameFilter(String extension){
-        this.pattern = extension;
+        this.suffix = "." + extension;
     }
 
     /** Filtra in base all'estensione
@@ -31,6 +33,25 @@ public class ExtensionFilenameFilter
      * corretta, <CODE>false</CODE> altrimenti
      */
     public boolean accept(File dir, String name){
-        return(name.endsWith("." + pattern));
+        return(name.endsWith(suffix));
+    }
+
+    /** Filtra in base all'estensione
+     * @param path Il file da filtrare
+     * @param attrs Gli attributi del file (non usati)
+     * @return <CODE>true</CODE> se il file termina con l'estensione
+     * corretta, <CODE>false</CODE> altrimenti
+     */
+    @Override
+    public boolean accept(Path path, BasicFileAttributes attrs){
+        return FileAttributesFilter.name(path).endsWith(suffix);
+    }
+
+    /** Il filtro usa solo il nome del file
+     * @return {@link Cost#NAME}
+     */
+    @Override
+    public Cost cost(){
+        return Cost.NAME;
     }
 }
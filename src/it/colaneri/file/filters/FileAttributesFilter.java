@@ -0,0 +1,94 @@
+package it.colaneri.file.filters;
+
+import java.io.FileFilter;
+import java.io.FilenameFilter;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+///////////////////////////////////////////////////////////////////////////
+/** Filtro che riceve, insieme al path, gli attributi del file gia' letti
+ * (ad esempio da {@link java.nio.file.Files#walkFileTree} o da un
+ * {@link java.nio.file.DirectoryStream}): a differenza di un
+ * {@link FileFilter} non deve interrogare di nuovo il filesystem per
+ * sapere se si tratta di un file o di una directory.
+ * I filtri di questo package implementano anche questa interfaccia;
+ * {@link #of(FileFilter)} e {@link #of(FilenameFilter)} adattano
+ * tutti gli altri.
+ */
+@FunctionalInterface
+public interface FileAttributesFilter{
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Metodo di accettazione dei file
+     * @param path Il file o la directory da accettare o filtrare.
+     * @param attrs Gli attributi del file.
+     * @return <CODE>true</CODE> se il file e' accettato;
+     * <CODE>false</CODE> se e' rifiutato.
+     */
+    boolean accept(Path path, BasicFileAttributes attrs);
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Costo relativo di un filtro, in ordine crescente: usato da
+     * {@link CompositeFileFilter} per valutare prima i filtri piu' economici.
+     */
+    enum Cost{
+        /** Solo il nome del file: gli attributi non sono usati e possono
+         * essere null */
+        NAME,
+        /** Espressione regolare sul nome del file */
+        PATTERN,
+        /** Gli attributi del file */
+        ATTRIBUTES,
+        /** Accesso al filesystem oltre agli attributi, o costo sconosciuto */
+        STAT
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Ritorna il costo relativo del filtro. Il valore di default e'
+     * {@link Cost#STAT}, adatto a un filtro di cui non si sa nulla.
+     * @return Il costo del filtro.
+     */
+    default Cost cost(){
+        return Cost.STAT;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Adatta un {@link FileFilter}: se implementa gia' questa interfaccia
+     * viene usato direttamente, altrimenti riceve il path come File.
+     * @param filter Il filtro da adattare.
+     * @return Il filtro adattato.
+     */
+    static FileAttributesFilter of(FileFilter filter){
+        if(filter instanceof FileAttributesFilter){
+            return (FileAttributesFilter)filter;
+        }
+        return (path, attrs) -> filter.accept(path.toFile());
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Adatta un {@link FilenameFilter}: se implementa gia' questa
+     * interfaccia viene usato direttamente, altrimenti riceve la directory
+     * che contiene il file e il nome del file.
+     * @param filter Il filtro da adattare.
+     * @return Il filtro adattato.
+     */
+    static FileAttributesFilter of(FilenameFilter filter){
+        if(filter instanceof FileAttributesFilter){
+            return (FileAttributesFilter)filter;
+        }
+        return (path, attrs) -> {
+            Path parent = path.toAbsolutePath().getParent();
+            return filter.accept(parent == null ? null : parent.toFile(), name(path));
+        };
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Ritorna il nome del file, senza allocare un File
+     * @param path Il path.
+     * @return Il nome del file, stringa vuota se il path non ha nome.
+     */
+    static String name(Path path){
+        Path name = path.getFileName();
+        return name == null ? "" : name.toString();
+    }
+}
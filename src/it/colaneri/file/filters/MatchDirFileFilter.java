@@ -8,6 +8,8 @@ package it.colaneri.file.filters;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 
 /** E' un filtro che permette di fare
  * un list su filesystem con selezione di subdirectory specificate.
@@ -15,16 +17,23 @@ import java.io.FileFilter;
  *  presente in una lista data.
  */
 public class MatchDirFileFilter
-    implements FileFilter{
+    implements FileFilter, FileAttributesFilter{
 
-    private String[] dirsName;
+    private final String[] dirsName;
 
     ///////////////////////////////////////////////////////////////////
     /** Costruttore.
      * @param dirsName La stringa da ricercare nel nome del file.
      */
     public MatchDirFileFilter(String[] dirsName){
-        this.dirsName = dirsName;
+        this.dirsName = dirsName.clone();
+        for(int i = 0; i < this.dirsName.length; i++){
+            while(this.dirsName[i].endsWith("/")){
+                this.dirsName[i] = this.dirsName[i].substring(0,
+                                                              this.dirsName[i].length() -
+                                                              1);
+            }
+        }
     }
 
     ///////////////////////////////////////////////////////////////////
@@ -34,18 +43,33 @@ public class MatchDirFileFilter
      * <CODE>false</CODE> se  rifiutato.
      */
     public boolean accept(File file){
-        String filename = file.getName();
-
-        if(file.isDirectory()){
-            for(int i = 0; i < dirsName.length; i++){
-                if(dirsName[i].endsWith("/")){
-                    dirsName[i] = dirsName[i].substring(0,
-                                                        dirsName[i].length() -
-                                                        1);
-                }
-                if(filename.equals(dirsName[i])){
-                    return true;
-                }
+        return file.isDirectory() && accept(file.getName());
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    /** Metodo di accettazione dei file con gli attributi gia' letti
+     * @param path Il file o la directory da accettare o filtrare.
+     * @param attrs Gli attributi del file.
+     * @return <CODE>true</CODE> se il file e' accettato;
+     * <CODE>false</CODE> se e' rifiutato.
+     */
+    @Override
+    public boolean accept(Path path, BasicFileAttributes attrs){
+        return attrs.isDirectory() && accept(FileAttributesFilter.name(path));
+    }
+
+    /** Il filtro usa gli attributi del file
+     * @return {@link Cost#ATTRIBUTES}
+     */
+    @Override
+    public Cost cost(){
+        return Cost.ATTRIBUTES;
+    }
+
+    private boolean accept(String filename){
+        for(String dirName:dirsName){
+            if(filename.equals(dirName)){
+                return true;
             }
         }
         return false;
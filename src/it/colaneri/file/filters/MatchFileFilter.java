@@ -8,6 +8,8 @@ package it.colaneri.file.filters;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 
 /** E' un filtro che permette di fare
  * un list su filesystem con selezione.
@@ -15,9 +17,9 @@ import java.io.FileFilter;
  * contiene una stringa specificata.
  */
 public class MatchFileFilter
-    implements FileFilter{
+    implements FileFilter, FileAttributesFilter{
 
-    private String match; //stringa da ricercare nel nome del file
+    private final String match; //stringa da ricercare nel nome del file
 
     ///////////////////////////////////////////////////////////////////
     /** Costruttore.
@@ -36,4 +38,24 @@ public class MatchFileFilter
     public boolean accept(File file){
         return(file.getName().contains(match));
     }
+
+    ///////////////////////////////////////////////////////////////////
+    /** Metodo di accettazione dei file con gli attributi gia' letti
+     * @param path Il file o la directory da accettare o filtrare.
+     * @param attrs Gli attributi del file (non usati).
+     * @return <CODE>true</CODE> se il file e' accettato;
+     * <CODE>false</CODE> se e' rifiutato.
+     */
+    @Override
+    public boolean accept(Path path, BasicFileAttributes attrs){
+        return(FileAttributesFilter.name(path).contains(match));
+    }
+
+    /** Il filtro usa solo il nome del file
+     * @return {@link Cost#NAME}
+     */
+    @Override
+    public Cost cost(){
+        return Cost.NAME;
+    }
 }
@@ -2,6 +2,8 @@ package it.colaneri.file.filters;
 
 import java.io.FilenameFilter;
 import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 
 /**
  * <p>Title: MatchFilenameFilter</p>
@@ -12,7 +14,7 @@ import java.io.File;
  * contiene una stringa specificata.
  */
 
-public class MatchFilenameFilter implements FilenameFilter {
+public class MatchFilenameFilter implements FilenameFilter, FileAttributesFilter {
 
     private final String match;  //stringa da ricercare nel nome del file
 
@@ -31,4 +33,20 @@ public class MatchFilenameFilter implements FilenameFilter {
         return  (name.contains(match));
     }
 
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public boolean accept(Path path, BasicFileAttributes attrs) {
+        return  (FileAttributesFilter.name(path).contains(match));
+    }
+
+    /** Il filtro usa solo il nome del file
+     * @return {@link Cost#NAME}
+     */
+    @Override
+    public Cost cost() {
+        return Cost.NAME;
+    }
+
 }
@@ -8,25 +8,47 @@ package it.colaneri.file.filters;
 
 import java.io.File;
 import java.io.FileFilter;
-import java.util.Enumeration;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 /** E' un filtro che permette di fare
  * un list su filesystem con selezione.
  * Sono accettati tutti i file e le directory il cui nome
  *  presente come valore nel properties specificato
+ * <p>I valori sono letti alla costruzione e compilati in un albero dei
+ * prefissi: la verifica non accede al properties e costa quanto la
+ * lunghezza del nome. Le modifiche successive al properties sono viste
+ * solo dopo {@link #refresh()}.
  */
 public class MatchPropertiesFileFilter
-    implements FileFilter{
+    implements FileFilter, FileAttributesFilter{
 
     private final Properties renaming; //stringa da ricercare nel nome del file
 
+    private volatile PatternTrie values; //valori del properties all'ultimo refresh
+
     ///////////////////////////////////////////////////////////////////
     /** Costruttore.
      * @param renaming una properties in cui cercare NEI VALORI i nomi dei file da filtrare
      */
     public MatchPropertiesFileFilter(Properties renaming){
         this.renaming = renaming;
+        refresh();
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    /** Rilegge i valori del properties. Le verifiche in corso continuano
+     * con i valori precedenti, quelle successive usano i nuovi.
+     */
+    public void refresh(){
+        List<String> snapshot = new ArrayList<>();
+        for(Object value:renaming.values().toArray()){
+            snapshot.add((String)value);
+        }
+        values = new PatternTrie(snapshot);
     }
 
     ///////////////////////////////////////////////////////////////////
@@ -36,15 +58,30 @@ public class MatchPropertiesFileFilter
      * <CODE>false</CODE> se  rifiutato.
      */
     public boolean accept(File file){
-        boolean check = false;
-        Enumeration<Object> e = renaming.elements();
-        while(e.hasMoreElements()){
-            String value = (String)e.nextElement();
-            if(file.getName().startsWith((value))){
-                check = true;
-                break;
-            }
-        }
-        return check;
+        return accept(file.getName());
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    /** Metodo di accettazione dei file con gli attributi gia' letti
+     * @param path Il file o la directory da accettare o filtrare.
+     * @param attrs Gli attributi del file (non usati).
+     * @return <CODE>true</CODE> se il file e' accettato;
+     * <CODE>false</CODE> se e' rifiutato.
+     */
+    @Override
+    public boolean accept(Path path, BasicFileAttributes attrs){
+        return accept(FileAttributesFilter.name(path));
+    }
+
+    /** Il filtro usa solo il nome del file
+     * @return {@link Cost#NAME}
+     */
+    @Override
+    public Cost cost(){
+        return Cost.NAME;
+    }
+
+    private boolean accept(String name){
+        return values.prefixOf(name);
     }
 }
@@ -8,6 +8,8 @@ package it.colaneri.file.filters;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 
 /** E' un filtro che permette di fare
  * un list su filesystem con selezione.
@@ -15,11 +17,11 @@ import java.io.FileFilter;
  * contiene una stringa specificata.
  */
 public class MatchTimestampFileFilter
-    implements FileFilter{
+    implements FileFilter, FileAttributesFilter{
 
-    private String match; //stringa da ricercare nel nome del file
+    private final String match; //stringa da ricercare nel nome del file
 
-    private int shift;
+    private final int shift;
 
     ///////////////////////////////////////////////////////////////////
     /** Costruttore.
@@ -41,8 +43,30 @@ public class MatchTimestampFileFilter
      * <CODE>false</CODE> se  rifiutato.
      */
     public boolean accept(File file){
-        //nome del file
-        String filename = file.getName();
+        return accept(file.getName());
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    /** Metodo di accettazione dei file con gli attributi gia' letti
+     * @param path Il file o la directory da accettare o filtrare.
+     * @param attrs Gli attributi del file (non usati).
+     * @return <CODE>true</CODE> se il file e' accettato;
+     * <CODE>false</CODE> se e' rifiutato.
+     */
+    @Override
+    public boolean accept(Path path, BasicFileAttributes attrs){
+        return accept(FileAttributesFilter.name(path));
+    }
+
+    /** Il filtro usa solo il nome del file
+     * @return {@link Cost#NAME}
+     */
+    @Override
+    public Cost cost(){
+        return Cost.NAME;
+    }
+
+    private boolean accept(String filename){
         //nome del file senza estensione e punto
         int extIndex = filename.lastIndexOf(".");
         String elWithoutExt;
@@ -0,0 +1,81 @@
+package it.colaneri.file.filters;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FilenameFilter;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collection;
+
+/** Come {@link MatchFileFilter} e {@link MatchFilenameFilter}, ma con
+ * piu' stringhe: sono accettati tutti i file e le directory il cui nome
+ * contiene almeno una delle stringhe specificate.
+ * Le stringhe sono compilate alla costruzione in un automa di
+ * Aho-Corasick, quindi il costo di ogni verifica dipende dalla lunghezza
+ * del nome e non dal numero di stringhe.
+ */
+public class MultiMatchFileFilter
+    implements FileFilter, FilenameFilter, FileAttributesFilter{
+
+    private final PatternTrie matches; //stringhe da ricercare nel nome del file
+
+    ///////////////////////////////////////////////////////////////////
+    /** Costruttore.
+     * @param matches Le stringhe da ricercare nel nome del file.
+     */
+    public MultiMatchFileFilter(String... matches){
+        this(Arrays.asList(matches));
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    /** Costruttore.
+     * @param matches Le stringhe da ricercare nel nome del file.
+     */
+    public MultiMatchFileFilter(Collection<String> matches){
+        this.matches = new PatternTrie(matches);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    /** Metodo di accettazione dei file
+     * @param file Il file o la directory da accettare o filtrare.
+     * @return <CODE>true</CODE> se il file e' accettato;
+     * <CODE>false</CODE> se e' rifiutato.
+     */
+    @Override
+    public boolean accept(File file){
+        return matches.occursIn(file.getName());
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    /** Metodo di accettazione dei file
+     * @param dir La directory che contiene il file (non usata).
+     * @param name Il nome del file.
+     * @return <CODE>true</CODE> se il file e' accettato;
+     * <CODE>false</CODE> se e' rifiutato.
+     */
+    @Override
+    public boolean accept(File dir, String name){
+        return matches.occursIn(name);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    /** Metodo di accettazione dei file con gli attributi gia' letti
+     * @param path Il file o la directory da accettare o filtrare.
+     * @param attrs Gli attributi del file (non usati).
+     * @return <CODE>true</CODE> se il file e' accettato;
+     * <CODE>false</CODE> se e' rifiutato.
+     */
+    @Override
+    public boolean accept(Path path, BasicFileAttributes attrs){
+        return matches.occursIn(FileAttributesFilter.name(path));
+    }
+
+    /** Il filtro usa solo il nome del file
+     * @return {@link Cost#NAME}
+     */
+    @Override
+    public Cost cost(){
+        return Cost.NAME;
+    }
+}
@@ -8,6 +8,8 @@ package it.colaneri.file.filters;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -15,8 +17,8 @@ import java.util.regex.Pattern;
  * i file aventi nome rispettante un pattern dato.
  */
 public class PatternFileFilter
-    implements FileFilter{
-    private Pattern pattern;
+    implements FileFilter, FileAttributesFilter{
+    private final Pattern pattern;
 
     /** Costruttore.
      * @param pattern il pattern da filtrare.
@@ -31,16 +33,34 @@ public class PatternFileFilter
      */
     public boolean accept(File file){
         if(file.isFile()){
-            Matcher matcher = pattern.matcher(file.getName());
-            boolean found = false;
-            while(matcher.find()){
-                found = true;
-            }
-            return found;
+            return accept(file.getName());
         }
         else{
             return false;
         }
     }
 
+    /** Come {@link #accept(File)}, con gli attributi gia' letti.
+     * @param path Il file da accettare o rifiutare.
+     * @param attrs Gli attributi del file.
+     * @return File accettato o rifiutato.
+     */
+    @Override
+    public boolean accept(Path path, BasicFileAttributes attrs){
+        return attrs.isRegularFile() && accept(FileAttributesFilter.name(path));
+    }
+
+    /** Il filtro applica un'espressione regolare al nome del file
+     * @return {@link Cost#PATTERN}
+     */
+    @Override
+    public Cost cost(){
+        return Cost.PATTERN;
+    }
+
+    private boolean accept(String name){
+        Matcher matcher = pattern.matcher(name);
+        return matcher.find();
+    }
+
 }
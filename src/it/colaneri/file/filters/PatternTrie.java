@@ -0,0 +1,164 @@
+package it.colaneri.file.filters;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+///////////////////////////////////////////////////////////////////////////
+/** Automa di Aho-Corasick su un insieme di stringhe, costruito una sola
+ * volta e poi solo letto (quindi utilizzabile da piu' thread).
+ * Permette di verificare in un solo passaggio sul testo, proporzionale
+ * alla sua lunghezza, se una delle stringhe e' contenuta nel testo o ne
+ * e' un prefisso, indipendentemente dal numero di stringhe.
+ */
+final class PatternTrie{
+
+    private static final int ROOT = 0;
+
+    //Archi del nodo n: da first[n] a first[n + 1] escluso, ordinati per carattere
+    private final int[] first;
+
+    private final char[] labels;
+
+    private final int[] targets;
+
+    //Nodo del suffisso piu' lungo presente nell'automa
+    private final int[] fail;
+
+    //Una stringa termina nel nodo
+    private final boolean[] terminal;
+
+    //Una stringa termina nel nodo o in uno dei suoi suffissi
+    private final boolean[] output;
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Costruttore
+     * @param patterns Le stringhe da cercare.
+     * @throws IllegalArgumentException se una stringa e' null.
+     */
+    PatternTrie(Collection<String> patterns){
+        List<Map<Character, Integer>> children = new ArrayList<>();
+        children.add(new TreeMap<>());
+        List<Boolean> ends = new ArrayList<>();
+        ends.add(false);
+        for(String pattern:patterns){
+            if(pattern == null){
+                throw new IllegalArgumentException("Pattern null");
+            }
+            int node = ROOT;
+            for(int i = 0; i < pattern.length(); i++){
+                Integer next = children.get(node).get(pattern.charAt(i));
+                if(next == null){
+                    next = children.size();
+                    children.get(node).put(pattern.charAt(i), next);
+                    children.add(new TreeMap<>());
+                    ends.add(false);
+                }
+                node = next;
+            }
+            ends.set(node, true);
+        }
+
+        int nodes = children.size();
+        first = new int[nodes + 1];
+        labels = new char[nodes - 1];
+        targets = new int[nodes - 1];
+        terminal = new boolean[nodes];
+        int edge = 0;
+        for(int n = 0; n < nodes; n++){
+            first[n] = edge;
+            for(Map.Entry<Character, Integer> e:children.get(n).entrySet()){
+                labels[edge] = e.getKey();
+                targets[edge] = e.getValue();
+                edge++;
+            }
+            terminal[n] = ends.get(n);
+        }
+        first[nodes] = edge;
+
+        //Collegamenti di fallimento, in ampiezza
+        fail = new int[nodes];
+        output = terminal.clone();
+        Deque<Integer> queue = new ArrayDeque<>();
+        for(int e = first[ROOT]; e < first[ROOT + 1]; e++){
+            queue.add(targets[e]);
+        }
+        while(!queue.isEmpty()){
+            int n = queue.poll();
+            for(int e = first[n]; e < first[n + 1]; e++){
+                int t = targets[e];
+                int f = fail[n];
+                int next;
+                while((next = child(f, labels[e])) < 0 && f != ROOT){
+                    f = fail[f];
+                }
+                fail[t] = next < 0 ? ROOT : next;
+                output[t] |= output[fail[t]];
+                queue.add(t);
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Verifica se una delle stringhe e' contenuta nel testo
+     * @param text Il testo.
+     * @return <CODE>true</CODE> se almeno una stringa e' contenuta nel testo.
+     */
+    boolean occursIn(CharSequence text){
+        int node = ROOT;
+        if(output[node]){
+            return true;
+        }
+        for(int i = 0; i < text.length(); i++){
+            char c = text.charAt(i);
+            int next;
+            while((next = child(node, c)) < 0 && node != ROOT){
+                node = fail[node];
+            }
+            node = next < 0 ? ROOT : next;
+            if(output[node]){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    /** Verifica se una delle stringhe e' un prefisso del testo
+     * @param text Il testo.
+     * @return <CODE>true</CODE> se il testo inizia con almeno una delle stringhe.
+     */
+    boolean prefixOf(CharSequence text){
+        int node = ROOT;
+        for(int i = 0; !terminal[node]; i++){
+            if(i == text.length() || (node = child(node, text.charAt(i))) < 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //Nodo raggiunto dall'arco con il carattere indicato, -1 se assente
+    private int child(int node, char c){
+        int low = first[node];
+        int high = first[node + 1] - 1;
+        while(low <= high){
+            int mid = (low + high) >>> 1;
+            char label = labels[mid];
+            if(label < c){
+                low = mid + 1;
+            }
+            else if(label > c){
+                high = mid - 1;
+            }
+            else{
+                return targets[mid];
+            }
+        }
+        return -1;
+    }
+}
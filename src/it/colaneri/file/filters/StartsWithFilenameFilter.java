@@ -8,14 +8,16 @@ package it.colaneri.file.filters;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 
 ///////////////////////////////////////////////////////////////////////////
 /** Questo {@link FilenameFilter} permette di filtrare
  * file e directory il cui nome inizia con un certo prefisso.
  */
 public class StartsWithFilenameFilter
-    implements FilenameFilter{
-    String prefix;
+    implements FilenameFilter, FileAttributesFilter{
+    final String prefix;
 
     ///////////////////////////////////////////////////////////////////////
     /** Costruttore.
@@ -35,4 +37,23 @@ public class StartsWithFilenameFilter
         return name.startsWith(prefix);
     }
 
+    ///////////////////////////////////////////////////////////////////////
+    /** Come il metodo precedente, con gli attributi gia' letti.
+     * @param path Il file da accettare o rifiutare.
+     * @param attrs Gli attributi del file (non usati).
+     * @return File accettato o rifiutato.
+     */
+    @Override
+    public boolean accept(Path path, BasicFileAttributes attrs){
+        return FileAttributesFilter.name(path).startsWith(prefix);
+    }
+
+    /** Il filtro usa solo il nome del file
+     * @return {@link Cost#NAME}
+     */
+    @Override
+    public Cost cost(){
+        return Cost.NAME;
+    }
+
 }
@@ -8,6 +8,8 @@ package it.colaneri.file.filters;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 
 /** E' un filtro che permette di fare
  * un list su filesystem con selezione di subdirectory specificate.
@@ -16,16 +18,23 @@ import java.io.FileFilter;
  * ricercare al fondo un path del tipo "nuove/nokia").
  */
 public class SubPathsFileFilter
-    implements FileFilter{
+    implements FileFilter, FileAttributesFilter{
 
-    private String[] subPaths;
+    private final String[] subPaths;
 
     ///////////////////////////////////////////////////////////////////
     /** Costruttore.
      * @param subPaths La stringa da ricercare al fondo del path del file.
      */
     public SubPathsFileFilter(String[] subPaths){
-        this.subPaths = subPaths;
+        this.subPaths = subPaths.clone();
+        for(int i = 0; i < this.subPaths.length; i++){
+            while(this.subPaths[i].endsWith("/")){
+                this.subPaths[i] = this.subPaths[i].substring(0,
+                                                              this.subPaths[i].length() -
+                                                              1);
+            }
+        }
     }
 
     ///////////////////////////////////////////////////////////////////
@@ -35,20 +44,36 @@ public class SubPathsFileFilter
      * <CODE>false</CODE> se  rifiutato.
      */
     public boolean accept(File file){
-        String filename = file.getPath();
+        return file.isDirectory() && accept(file.getPath());
+    }
+
+    ///////////////////////////////////////////////////////////////////
+    /** Metodo di accettazione dei file con gli attributi gia' letti
+     * @param path Il file o la directory da accettare o filtrare.
+     * @param attrs Gli attributi del file.
+     * @return <CODE>true</CODE> se il file e' accettato;
+     * <CODE>false</CODE> se e' rifiutato.
+     */
+    @Override
+    public boolean accept(Path path, BasicFileAttributes attrs){
+        return attrs.isDirectory() && accept(path.toString());
+    }
+
+    /** Il filtro usa gli attributi del file
+     * @return {@link Cost#ATTRIBUTES}
+     */
+    @Override
+    public Cost cost(){
+        return Cost.ATTRIBUTES;
+    }
+
+    private boolean accept(String filename){
         if(File.separator.equals("\\")){
             filename = filename.replace('\\', '/');
         }
-        if(file.isDirectory()){
-            for(int i = 0; i < subPaths.length; i++){
-                if(subPaths[i].endsWith("/")){
-                    subPaths[i] = subPaths[i].substring(0,
-                                                        subPaths[i].length() -
-                                                        1);
-                }
-                if(filename.endsWith(subPaths[i])){
-                    return true;
-                }
+        for(String subPath:subPaths){
+            if(filename.endsWith(subPath)){
+                return true;
             }
         }
         return false;
@@ -1,6 +1,15 @@
 package it.colaneri.time;
 
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Timestamp {
 
@@ -9,6 +18,11 @@ public class Timestamp {
      */
     public static final String DEFAULT_FORMAT="yyyyMMddHHmmssSSS";
 
+    //Oltre questo numero di formati diversi la cache viene svuotata
+    private static final int MAX_CACHED = 1024;
+
+    private static final Map<String, Format> FORMATS = new ConcurrentHashMap<>();
+
     private String timestamp;
 
     /**
@@ -23,12 +37,329 @@ public class Timestamp {
      * @param timestampFormat il formato da usare
      */
     public Timestamp(String timestampFormat){
-        SimpleDateFormat sdf = new SimpleDateFormat(timestampFormat);
-        timestamp = sdf.format(new java.sql.Timestamp(System.currentTimeMillis()));
+        timestamp = now(timestampFormat);
+    }
+
+    /**
+     * Ritorna il timestamp corrente nel formato specificato, senza creare
+     * un'istanza di Timestamp (vedi {@link #format(String, long)})
+     * @param timestampFormat il formato da usare (vedi SimpleDateFormat)
+     * @return il timestamp formattato
+     */
+    public static String now(String timestampFormat){
+        return format(timestampFormat, System.currentTimeMillis());
+    }
+
+    /**
+     * Formatta la data specificata (vedi {@link #format(String, long)})
+     * @param timestampFormat il formato da usare (vedi SimpleDateFormat)
+     * @param when la data da formattare
+     * @return il timestamp formattato
+     */
+    public static String format(String timestampFormat, Date when){
+        return format(timestampFormat, when.getTime());
+    }
+
+    /**
+     * Formatta l'istante specificato. Il formattatore di ogni formato viene
+     * creato una sola volta e condiviso tra i thread: se il formato e'
+     * compatibile viene usato un {@link DateTimeFormatter}, altrimenti un
+     * SimpleDateFormat per thread. Per ogni formato viene inoltre conservato
+     * l'ultimo timestamp prodotto, riusato finche' l'istante resta nello stesso
+     * millisecondo, o nello stesso secondo se il formato non riporta i millisecondi.
+     * @param timestampFormat il formato da usare (vedi SimpleDateFormat)
+     * @param millis l'istante da formattare, in millisecondi dal 1970
+     * @return il timestamp formattato
+     * @throws IllegalArgumentException se il formato non e' valido
+     */
+    public static String format(String timestampFormat, long millis){
+        return getFormat(timestampFormat).format(millis);
+    }
+
+    /**
+     * Interpreta un timestamp nel formato specificato, con le stesse regole
+     * di SimpleDateFormat. Come per {@link #format(String, long)} il
+     * formattatore e' condiviso tra i thread: i formati numerici a larghezza
+     * fissa con anno, mese e giorno (es: yyyyMMddHHmmss) sono interpretati
+     * leggendo direttamente le cifre, gli altri con un SimpleDateFormat per thread.
+     * @param timestampFormat il formato da usare (vedi SimpleDateFormat)
+     * @param text il timestamp da interpretare
+     * @return l'istante corrispondente, in millisecondi dal 1970
+     * @throws ParseException se il timestamp non rispetta il formato
+     * @throws IllegalArgumentException se il formato non e' valido
+     */
+    public static long parse(String timestampFormat, String text)
+        throws ParseException{
+        return getFormat(timestampFormat).parse(text);
+    }
+
+    private static Format getFormat(String timestampFormat){
+        Format format = FORMATS.get(timestampFormat);
+        if(format == null){
+            format = new Format(timestampFormat);
+            if(FORMATS.size() >= MAX_CACHED){
+                FORMATS.clear();
+            }
+            FORMATS.putIfAbsent(timestampFormat, format);
+        }
+        return format;
     }
 
     @Override
     public String toString() {
         return timestamp;
     }
+
+    //Formattatore di un formato, con l'ultimo timestamp prodotto
+    private static final class Format {
+
+        private final DateTimeFormatter formatter;
+
+        private final FixedParser parser;
+
+        private final ThreadLocal<SimpleDateFormat> legacy;
+
+        private final long resolution;
+
+        private volatile Rendered last;
+
+        Format(String pattern){
+            //Verifica il formato con le regole di SimpleDateFormat
+            new SimpleDateFormat(pattern);
+            formatter = compatible(pattern)
+                ? DateTimeFormatter.ofPattern(pattern).withZone(ZoneId.systemDefault())
+                : null;
+            parser = FixedParser.of(pattern);
+            legacy = ThreadLocal.withInitial(() -> new SimpleDateFormat(pattern));
+            resolution = hasLetter(pattern, 'S') ? 1 : 1000;
+        }
+
+        String format(long millis){
+            long window = Math.floorDiv(millis, resolution);
+            Rendered r = last;
+            if(r != null && r.window == window){
+                return r.text;
+            }
+            String text = formatter != null ? formatter.format(Instant.ofEpochMilli(millis))
+                                            : legacy.get().format(new Date(millis));
+            last = new Rendered(window, text);
+            return text;
+        }
+
+        long parse(String text)
+            throws ParseException{
+            if(parser != null){
+                long millis = parser.parse(text);
+                if(millis != Long.MIN_VALUE){
+                    return millis;
+                }
+            }
+            return legacy.get().parse(text).getTime();
+        }
+    }
+
+    //Timestamp prodotto per un intervallo
+    private static final class Rendered {
+
+        private final long window;
+
+        private final String text;
+
+        Rendered(long window, String text){
+            this.window = window;
+            this.text = text;
+        }
+    }
+
+    //Vero se il formato da' lo stesso risultato con SimpleDateFormat e con
+    //DateTimeFormatter: solo campi numerici con lo stesso significato e
+    //nessun carattere riservato da DateTimeFormatter
+    private static boolean compatible(String pattern){
+        boolean quoted = false;
+        int i = 0;
+        while(i < pattern.length()){
+            char c = pattern.charAt(i);
+            if(c == '\''){
+                quoted = !quoted;
+                i++;
+                continue;
+            }
+            if(quoted){
+                i++;
+                continue;
+            }
+            if(c == '[' || c == ']' || c == '{' || c == '}' || c == '#'){
+                return false;
+            }
+            if(!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z')){
+                i++;
+                continue;
+            }
+            int count = 1;
+            while(i + count < pattern.length() && pattern.charAt(i + count) == c){
+                count++;
+            }
+            i += count;
+            switch(c){
+                case 'y':
+                    break;
+                case 'M':
+                case 'd':
+                case 'H':
+                case 'k':
+                case 'K':
+                case 'h':
+                case 'm':
+                case 's':
+                    if(count > 2){
+                        return false;
+                    }
+                    break;
+                case 'D':
+                    if(count > 3){
+                        return false;
+                    }
+                    break;
+                case 'S':
+                    if(count != 3){
+                        return false;
+                    }
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    //Interpretazione dei formati composti solo da campi numerici a larghezza
+    //fissa (yyyy, MM, dd, HH, mm, ss, SSS) comprendenti la data: le cifre sono
+    //lette direttamente dalle posizioni note, con le stesse regole di
+    //SimpleDateFormat (campi mancanti a zero, valori fuori intervallo
+    //riportati sui campi superiori)
+    private static final class FixedParser {
+
+        private static final String LETTERS = "yMdHmsS";
+
+        private static final int[] WIDTHS = {4, 2, 2, 2, 2, 2, 3};
+
+        //Testo atteso: le posizioni dei campi valgono 0
+        private final char[] literals;
+
+        //Posizione di ogni campo nel testo, -1 se assente
+        private final int[] offsets;
+
+        //Come per SimpleDateFormat, il fuso orario alla creazione
+        private final ZoneId zone = ZoneId.systemDefault();
+
+        private FixedParser(char[] literals, int[] offsets){
+            this.literals = literals;
+            this.offsets = offsets;
+        }
+
+        static FixedParser of(String pattern){
+            if(!compatible(pattern)){
+                return null;
+            }
+            StringBuilder literals = new StringBuilder();
+            int[] offsets = new int[LETTERS.length()];
+            Arrays.fill(offsets, -1);
+            boolean quoted = false;
+            int i = 0;
+            while(i < pattern.length()){
+                char c = pattern.charAt(i);
+                if(c == '\''){
+                    if(i + 1 < pattern.length() && pattern.charAt(i + 1) == '\''){
+                        literals.append('\'');
+                        i += 2;
+                    }
+                    else{
+                        quoted = !quoted;
+                        i++;
+                    }
+                    continue;
+                }
+                if(quoted || !(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z')){
+                    if(c == 0){
+                        return null;
+                    }
+                    literals.append(c);
+                    i++;
+                    continue;
+                }
+                int count = 1;
+                while(i + count < pattern.length() && pattern.charAt(i + count) == c){
+                    count++;
+                }
+                int field = LETTERS.indexOf(c);
+                if(field == -1 || WIDTHS[field] != count || offsets[field] != -1){
+                    return null;
+                }
+                offsets[field] = literals.length();
+                for(int k = 0; k < count; k++){
+                    literals.append((char)0);
+                }
+                i += count;
+            }
+            if(offsets[0] == -1 || offsets[1] == -1 || offsets[2] == -1){
+                return null;
+            }
+            return new FixedParser(literals.toString().toCharArray(), offsets);
+        }
+
+        //L'istante corrispondente, o Long.MIN_VALUE se il testo non ha
+        //esattamente la forma del formato
+        long parse(String text){
+            if(text.length() != literals.length){
+                return Long.MIN_VALUE;
+            }
+            for(int i = 0; i < literals.length; i++){
+                char c = text.charAt(i);
+                if(literals[i] == 0 ? c < '0' || c > '9' : c != literals[i]){
+                    return Long.MIN_VALUE;
+                }
+            }
+            int[] values = new int[offsets.length];
+            for(int f = 0; f < offsets.length; f++){
+                if(offsets[f] != -1){
+                    for(int k = 0; k < WIDTHS[f]; k++){
+                        values[f] = values[f] * 10 + text.charAt(offsets[f] + k) - '0';
+                    }
+                }
+            }
+            if(values[0] == 0){
+                return Long.MIN_VALUE; //anno 0: ere diverse
+            }
+            LocalDateTime time;
+            if(values[1] >= 1 && values[1] <= 12 && values[2] >= 1 && values[2] <= 28
+               && values[3] < 24 && values[4] < 60 && values[5] < 60){
+                time = LocalDateTime.of(values[0], values[1], values[2],
+                                        values[3], values[4], values[5],
+                                        values[6] * 1000000);
+            }
+            else{
+                time = LocalDateTime.of(values[0], 1, 1, 0, 0)
+                    .plusMonths(values[1] - 1L).plusDays(values[2] - 1L)
+                    .plusHours(values[3]).plusMinutes(values[4]).plusSeconds(values[5])
+                    .plusNanos(values[6] * 1000000L);
+            }
+            //Nel cambio d'ora SimpleDateFormat sceglie l'ora solare
+            return time.atZone(zone).withLaterOffsetAtOverlap().toInstant().toEpochMilli();
+        }
+    }
+
+    //Vero se la lettera compare nel formato fuori dal testo tra apici
+    private static boolean hasLetter(String pattern, char letter){
+        boolean quoted = false;
+        for(int i = 0; i < pattern.length(); i++){
+            char c = pattern.charAt(i);
+            if(c == '\''){
+                quoted = !quoted;
+            }
+            else if(!quoted && c == letter){
+                return true;
+            }
+        }
+        return false;
+    }
 }